@@ -0,0 +1,102 @@
+package club.cloudcastgames.castlib.benchmarks;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.BenchmarkCommands;
+import club.cloudcastgames.castlib.player.UUIDCache;
+import com.google.common.base.Preconditions;
+import org.bukkit.Bukkit;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A CastLib enabled on a stand-in server (see {@link StandIns}), with generated commands registered.
+ * <p>
+ * CastLib can only be enabled once per JVM, so every benchmark trial has to run in its own fork
+ * (the JMH default); running with -f 0 fails as soon as the parameters change.
+ */
+final class BenchmarkServer {
+    // A name which is in the UUID cache but not online.
+    static final String OFFLINE_NAME = "OfflineRegular";
+
+    private static Server server;
+    private static int commandCount = -1;
+    private static int playerCount = -1;
+
+    private BenchmarkServer() {}
+
+    /**
+     * Starts the server if it isn't started yet.
+     * Commands are registered in pairs: "cmd{i}", and "grp{i % 20} sub{i}" as a subcommand.
+     * All of them take a player and an optional amount.
+     *
+     * @param commands The number of commands to register.
+     * @param players  The number of online players.
+     */
+    static synchronized void start(int commands, int players) {
+        if (server != null) {
+            Preconditions.checkState(commands == commandCount && players == playerCount, "CastLib is already enabled with other parameters; run every trial in its own fork.");
+            return;
+        }
+
+        File dataFolder;
+
+        try {
+            dataFolder = Files.createTempDirectory("castlib-benchmarks").toFile();
+        } catch (IOException e) {
+            throw (new RuntimeException(e));
+        }
+
+        server = StandIns.server(players);
+        commandCount = commands;
+        playerCount = players;
+        Bukkit.setServer(server);
+
+        CastLib plugin = new CastLib(new JavaPluginLoader(server), new PluginDescriptionFile("CastLib", "benchmark", CastLib.class.getName()), dataFolder, new File(dataFolder, "CastLib.jar"));
+        plugin.onEnable();
+
+        List<String> names = new ArrayList<>();
+
+        for (int index = 0; index < commands; index++) {
+            names.add(index % 2 == 0 ? "cmd" + index : "grp" + (index % 20) + " sub" + index);
+        }
+
+        BenchmarkCommands.register(names);
+
+        UUIDCache.update(StandIns.uuidOf(OFFLINE_NAME), OFFLINE_NAME);
+    }
+
+    static Server getServer() {
+        return (server);
+    }
+
+    /**
+     * @return The online player with the given index, wrapping around if there are fewer players.
+     */
+    static Player getPlayer(int index) {
+        List<Player> players = new ArrayList<>(server.getOnlinePlayers());
+        return (players.get(index % players.size()));
+    }
+
+    /**
+     * @return The name of a top-level command in the middle of the registry.
+     */
+    static String getMiddleCommand() {
+        return ("cmd" + ((commandCount / 2) & ~1));
+    }
+
+    /**
+     * @return The name of a subcommand in the middle of the registry.
+     */
+    static String getMiddleSubcommand() {
+        int index = (commandCount / 2) | 1;
+        return ("grp" + (index % 20) + " sub" + index);
+    }
+}
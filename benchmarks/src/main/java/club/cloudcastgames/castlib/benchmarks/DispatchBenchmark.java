@@ -0,0 +1,61 @@
+package club.cloudcastgames.castlib.benchmarks;
+
+import club.cloudcastgames.castlib.command.CastCommandHandler;
+import club.cloudcastgames.castlib.command.CommandData;
+import club.cloudcastgames.castlib.command.CommandLine;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full command dispatch through {@link CastCommandHandler#evalCommand}: lookup, permission check,
+ * parameter transforms and the (empty) command method.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+    @Param({ "10", "100", "1000", "5000" })
+    private int commands;
+    @Param({ "1", "100", "1000" })
+    private int players;
+
+    private Player sender;
+    private String command;
+    private String subcommand;
+    private CommandLine parsedCommand;
+
+    @Setup
+    public void setup() {
+        BenchmarkServer.start(commands, players);
+
+        sender = BenchmarkServer.getPlayer(0);
+        command = BenchmarkServer.getMiddleCommand() + " " + BenchmarkServer.getPlayer(players / 2).getName() + " 5";
+        subcommand = BenchmarkServer.getMiddleSubcommand() + " " + BenchmarkServer.getPlayer(players / 2).getName();
+        parsedCommand = CommandLine.parse(command);
+    }
+
+    @Benchmark
+    public CommandData command() {
+        return (CastCommandHandler.evalCommand(sender, command));
+    }
+
+    @Benchmark
+    public CommandData subcommand() {
+        return (CastCommandHandler.evalCommand(sender, subcommand));
+    }
+
+    @Benchmark
+    public CommandData parsedCommand() {
+        return (CastCommandHandler.evalCommand(sender, parsedCommand));
+    }
+
+    @Benchmark
+    public CommandData unknownCommand() {
+        return (CastCommandHandler.evalCommand(sender, "unknown command here"));
+    }
+}
@@ -0,0 +1,65 @@
+package club.cloudcastgames.castlib.benchmarks;
+
+import club.cloudcastgames.castlib.command.CastCommandHandler;
+import club.cloudcastgames.castlib.command.CommandData;
+import club.cloudcastgames.castlib.command.CommandLine;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CommandData#execute(org.bukkit.command.CommandSender, CommandLine)} on its own:
+ * parameter transforms and the (empty) command method, without the lookup.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteBenchmark {
+    @Param({ "1", "100", "1000" })
+    private int players;
+
+    private Player sender;
+    private CommandData command;
+    private CommandLine allArguments;
+    private CommandLine defaultArguments;
+    private CommandLine badArguments;
+    private CommandLine noArguments;
+
+    @Setup
+    public void setup() {
+        BenchmarkServer.start(10, players);
+
+        String target = BenchmarkServer.getPlayer(players / 2).getName();
+
+        sender = BenchmarkServer.getPlayer(0);
+        command = CastCommandHandler.getCommandTrie().get(BenchmarkServer.getMiddleCommand());
+        allArguments = CommandLine.parse(target + " 64");
+        defaultArguments = CommandLine.parse(target);
+        badArguments = CommandLine.parse(target + " lots");
+        noArguments = CommandLine.parse("");
+    }
+
+    @Benchmark
+    public void allArguments() {
+        command.execute(sender, allArguments);
+    }
+
+    @Benchmark
+    public void defaultArguments() {
+        command.execute(sender, defaultArguments);
+    }
+
+    @Benchmark
+    public void badArguments() {
+        command.execute(sender, badArguments);
+    }
+
+    @Benchmark
+    public void usageError() {
+        command.execute(sender, noArguments);
+    }
+}
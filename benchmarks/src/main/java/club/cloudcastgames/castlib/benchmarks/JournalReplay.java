@@ -0,0 +1,194 @@
+package club.cloudcastgames.castlib.benchmarks;
+
+import club.cloudcastgames.castlib.command.BenchmarkCommands;
+import club.cloudcastgames.castlib.command.CastCommandHandler;
+import club.cloudcastgames.castlib.command.CommandJournalReader;
+import club.cloudcastgames.castlib.command.CommandLine;
+import club.cloudcastgames.castlib.command.stats.CommandMetrics;
+import club.cloudcastgames.castlib.command.stats.CommandPhase;
+import club.cloudcastgames.castlib.command.stats.LatencyHistogram;
+import org.bukkit.command.CommandSender;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays command journals (see {@link club.cloudcastgames.castlib.command.CommandJournal}) through
+ * {@link CastCommandHandler#evalCommand(CommandSender, CommandLine)} on a stand-in server, and reports the throughput and latency.
+ * <p>
+ * Every recorded alias is registered as a stand-in command which takes any arguments, so dispatch sees the same tree
+ * and the same lines as the server did. The commands do nothing, unless --simulate is given:
+ * then each one busy-waits for as long as its recorded run took to execute, to reproduce the load itself.
+ * Recorded players are mapped onto the stand-in players in the order they first appear.
+ * <pre>
+ * java -cp target/benchmarks.jar club.cloudcastgames.castlib.benchmarks.JournalReplay [--speed factor] [--players n] [--simulate] files or directories...
+ * </pre>
+ * A speed of 1 (the default) replays at the recorded pace, 2 twice as fast, and 0 as fast as possible.
+ */
+public final class JournalReplay {
+    // The recorded execution time of the run being replayed, for --simulate.
+    private static long simulatedNanos;
+
+    private JournalReplay() {}
+
+    public static void main(String[] args) throws IOException {
+        double speed = 1;
+        int players = 100;
+        boolean simulate = false;
+        List<File> files = new ArrayList<>();
+
+        for (int index = 0; index < args.length; index++) {
+            switch (args[index]) {
+                case "--speed":
+                    speed = Double.parseDouble(args[++index]);
+                    break;
+                case "--players":
+                    players = Integer.parseInt(args[++index]);
+                    break;
+                case "--simulate":
+                    simulate = true;
+                    break;
+                default:
+                    File file = new File(args[index]);
+                    File[] children = file.listFiles((dir, name) -> name.endsWith(".journal"));
+
+                    if (children != null) {
+                        // Sorting the names sorts the files by age.
+                        Arrays.sort(children);
+                        files.addAll(Arrays.asList(children));
+                    } else {
+                        files.add(file);
+                    }
+            }
+        }
+
+        if (files.isEmpty()) {
+            System.err.println("Usage: JournalReplay [--speed factor] [--players n] [--simulate] files or directories...");
+            System.exit(1);
+        }
+
+        List<Entry> entries = load(files);
+
+        if (entries.isEmpty()) {
+            System.err.println("The journals have no runs.");
+            return;
+        }
+
+        Set<String> aliases = new LinkedHashSet<>();
+
+        for (Entry entry : entries) {
+            aliases.add(entry.run.getAlias().toLowerCase());
+        }
+
+        BenchmarkServer.start(0, players);
+        BenchmarkCommands.registerWildcard(new ArrayList<>(aliases), simulate ? (sender, arguments) -> spin(simulatedNanos) : (sender, arguments) -> BenchmarkCommands.sink = arguments[0]);
+
+        replay(entries, speed, simulate);
+    }
+
+    private static List<Entry> load(List<File> files) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+
+        for (File file : files) {
+            try (CommandJournalReader reader = new CommandJournalReader(file)) {
+                long startNanos = TimeUnit.MILLISECONDS.toNanos(reader.getStartMillis());
+                CommandJournalReader.Run run;
+
+                while ((run = reader.next()) != null) {
+                    entries.add(new Entry(startNanos + run.getOffsetNanos(), run));
+                }
+            }
+        }
+
+        // Runs are written when they end, so they're sorted by when they started.
+        entries.sort((first, second) -> Long.compare(first.time, second.time));
+        return (entries);
+    }
+
+    private static void replay(List<Entry> entries, double speed, boolean simulate) {
+        Map<UUID, CommandSender> senders = new HashMap<>();
+        Map<String, LatencyHistogram> byCommand = new HashMap<>();
+        LatencyHistogram latency = new LatencyHistogram();
+        long maxLag = 0;
+        long firstTime = entries.get(0).time;
+        long start = System.nanoTime();
+
+        for (Entry entry : entries) {
+            CommandJournalReader.Run run = entry.run;
+
+            if (speed > 0) {
+                long due = start + (long) ((entry.time - firstTime) / speed);
+                long wait = due - System.nanoTime();
+
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                } else {
+                    maxLag = Math.max(maxLag, -wait);
+                }
+            }
+
+            CommandSender sender = run.getSenderId() == null ? BenchmarkServer.getServer().getConsoleSender() : senders.computeIfAbsent(run.getSenderId(), id -> BenchmarkServer.getPlayer(senders.size()));
+            CommandLine line = CommandLine.parse(run.getLine());
+
+            simulatedNanos = simulate ? run.getPhaseNanos(CommandPhase.EXECUTION) : 0;
+
+            long before = System.nanoTime();
+            CastCommandHandler.evalCommand(sender, line);
+            long took = System.nanoTime() - before;
+
+            latency.record(took);
+            byCommand.computeIfAbsent(run.getAlias().toLowerCase(), alias -> new LatencyHistogram()).record(took);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        double recorded = (entries.get(entries.size() - 1).time - firstTime) / 1e9;
+
+        System.out.printf(Locale.ROOT, "Replayed %d runs in %.3fs (recorded over %.3fs): %.0f commands/s%n", entries.size(), elapsed / 1e9, recorded, entries.size() / (elapsed / 1e9));
+        System.out.printf(Locale.ROOT, "evalCommand latency: p50 %s, p90 %s, p99 %s, p99.9 %s, max %s%n",
+                CommandMetrics.formatNanos(latency.getPercentile(50)), CommandMetrics.formatNanos(latency.getPercentile(90)),
+                CommandMetrics.formatNanos(latency.getPercentile(99)), CommandMetrics.formatNanos(latency.getPercentile(99.9)),
+                CommandMetrics.formatNanos(latency.getMax()));
+
+        if (speed > 0) {
+            System.out.printf(Locale.ROOT, "Fell behind the recorded pace by at most %s%n", CommandMetrics.formatNanos(maxLag));
+        }
+
+        System.out.println("Most expensive commands:");
+
+        byCommand.entrySet().stream()
+                .sorted((first, second) -> Long.compare(second.getValue().getTotal(), first.getValue().getTotal()))
+                .limit(10)
+                .forEach(command -> System.out.printf(Locale.ROOT, "  /%s: %d runs, %s total, p99 %s%n", command.getKey(), command.getValue().getCount(),
+                        CommandMetrics.formatNanos(command.getValue().getTotal()), CommandMetrics.formatNanos(command.getValue().getPercentile(99))));
+    }
+
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+
+        while (System.nanoTime() < end) {
+            // Busy, like the command was.
+        }
+    }
+
+    private static final class Entry {
+        // When the run started, in nanoseconds since the epoch.
+        private final long time;
+        private final CommandJournalReader.Run run;
+
+        private Entry(long time, CommandJournalReader.Run run) {
+            this.time = time;
+            this.run = run;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package club.cloudcastgames.castlib.benchmarks;
+
+import club.cloudcastgames.castlib.command.param.ParameterType;
+import club.cloudcastgames.castlib.command.param.defaults.*;
+import com.google.common.collect.ImmutableSet;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every built-in {@link ParameterType}, transforming a valid value, an invalid one, and tab completing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParameterTypeBenchmark {
+    private static final Set<String> NO_FLAGS = ImmutableSet.of("");
+
+    @Param({ "1", "100", "1000" })
+    private int players;
+
+    private Player sender;
+    private String playerName;
+    private String playerPrefix;
+    private final BooleanParameterType booleanType = new BooleanParameterType();
+    private final IntegerParameterType integerType = new IntegerParameterType();
+    private final IntegerParameterType integerAmountType = new IntegerParameterType(true);
+    private final LongParameterType longType = new LongParameterType();
+    private final DurationParameterType durationType = new DurationParameterType();
+    private final DoubleParameterType doubleType = new DoubleParameterType();
+    private final FloatParameterType floatType = new FloatParameterType();
+    private final PlayerParameterType playerType = new PlayerParameterType();
+    private final OfflinePlayerParameterType offlinePlayerType = new OfflinePlayerParameterType();
+    private final WorldParameterType worldType = new WorldParameterType();
+
+    @Setup
+    public void setup() {
+        BenchmarkServer.start(10, players);
+
+        sender = BenchmarkServer.getPlayer(0);
+        playerName = BenchmarkServer.getPlayer(players / 2).getName();
+        // Matches about a tenth of the players when there are many.
+        playerPrefix = playerName.substring(0, Math.min(playerName.length(), "Player".length() + 1));
+    }
+
+    @Benchmark
+    public Object booleanTransform() {
+        return (booleanType.transform(sender, "yes"));
+    }
+
+    @Benchmark
+    public Object booleanInvalid() {
+        return (booleanType.transform(sender, "maybe"));
+    }
+
+    @Benchmark
+    public List<String> booleanTabComplete() {
+        return (booleanType.tabComplete(sender, NO_FLAGS, "t"));
+    }
+
+    @Benchmark
+    public Object integerTransform() {
+        return (integerType.transform(sender, "1234"));
+    }
+
+    @Benchmark
+    public Object integerInvalid() {
+        return (integerType.transform(sender, "12a4"));
+    }
+
+    @Benchmark
+    public Object integerAmount() {
+        return (integerAmountType.transform(sender, "1.5k"));
+    }
+
+    @Benchmark
+    public Object longTransform() {
+        return (longType.transform(sender, "123456789012"));
+    }
+
+    @Benchmark
+    public Object durationTransform() {
+        return (durationType.transform(sender, "1h30m"));
+    }
+
+    @Benchmark
+    public Object durationInvalid() {
+        return (durationType.transform(sender, "1x30m"));
+    }
+
+    @Benchmark
+    public Object doubleTransform() {
+        return (doubleType.transform(sender, "12.5"));
+    }
+
+    @Benchmark
+    public Object doubleInvalid() {
+        return (doubleType.transform(sender, "12.5.1"));
+    }
+
+    @Benchmark
+    public Object floatTransform() {
+        return (floatType.transform(sender, "12.5"));
+    }
+
+    @Benchmark
+    public Object floatInvalid() {
+        return (floatType.transform(sender, "1x"));
+    }
+
+    @Benchmark
+    public Object playerTransform() {
+        return (playerType.transform(sender, playerName));
+    }
+
+    @Benchmark
+    public Object playerInvalid() {
+        return (playerType.transform(sender, "Nobody"));
+    }
+
+    @Benchmark
+    public List<String> playerTabComplete() {
+        return (playerType.tabComplete(sender, NO_FLAGS, playerPrefix));
+    }
+
+    @Benchmark
+    public Object offlinePlayerOnline() {
+        return (offlinePlayerType.transform(sender, playerName));
+    }
+
+    @Benchmark
+    public Object offlinePlayerCached() {
+        return (offlinePlayerType.transform(sender, BenchmarkServer.OFFLINE_NAME));
+    }
+
+    @Benchmark
+    public Object offlinePlayerPrepare() {
+        return (offlinePlayerType.prepare(sender, BenchmarkServer.OFFLINE_NAME));
+    }
+
+    @Benchmark
+    public Object worldTransform() {
+        return (worldType.transform(sender, "world_nether"));
+    }
+
+    @Benchmark
+    public Object worldInvalid() {
+        return (worldType.transform(sender, "nowhere"));
+    }
+
+    @Benchmark
+    public List<String> worldTabComplete() {
+        return (worldType.tabComplete(sender, NO_FLAGS, "world_"));
+    }
+}
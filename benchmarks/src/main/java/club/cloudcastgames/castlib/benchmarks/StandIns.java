@@ -0,0 +1,242 @@
+package club.cloudcastgames.castlib.benchmarks;
+
+import org.bukkit.OfflinePlayer;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.logging.Logger;
+
+/**
+ * In-process stand-ins for the parts of Bukkit CastLib talks to, so the benchmarks don't need a server.
+ * <p>
+ * Every stand-in is a proxy: the methods CastLib relies on are answered from plain collections,
+ * and every other method returns a default (0, false, an empty collection or another stand-in).
+ * Players have every permission and can see each other; schedulers accept tasks but never run them.
+ */
+final class StandIns {
+    // Returned by a handler to fall back to the default answer.
+    private static final Object DEFAULT = new Object();
+
+    private StandIns() {}
+
+    /**
+     * Creates a server with the given online players (named Player0, Player1, ...) and three worlds.
+     */
+    static Server server(int players) {
+        Map<String, Player> playersByName = new HashMap<>();
+        Map<UUID, Player> playersByUuid = new HashMap<>();
+        Map<String, World> worldsByName = new LinkedHashMap<>();
+        List<Player> onlinePlayers = new ArrayList<>();
+        Logger logger = Logger.getLogger("CastLib-Benchmarks");
+        Server[] server = new Server[1];
+
+        for (String name : new String[] { "world", "world_nether", "world_the_end" }) {
+            worldsByName.put(name.toLowerCase(), world(name));
+        }
+
+        World defaultWorld = worldsByName.get("world");
+
+        for (int index = 0; index < players; index++) {
+            Player player = player("Player" + index, defaultWorld);
+
+            onlinePlayers.add(player);
+            playersByName.put(player.getName().toLowerCase(), player);
+            playersByUuid.put(player.getUniqueId(), player);
+        }
+
+        ConsoleCommandSender console = create(ConsoleCommandSender.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return ("CONSOLE");
+                case "isOp":
+                case "hasPermission":
+                case "isPermissionSet":
+                    return (true);
+                case "getServer":
+                    return (server[0]);
+                default:
+                    return (DEFAULT);
+            }
+        });
+        Object pluginManager = stub(org.bukkit.plugin.PluginManager.class);
+        Object scheduler = stub(org.bukkit.scheduler.BukkitScheduler.class);
+
+        server[0] = create(Server.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return ("CastLib-Benchmarks");
+                case "getVersion":
+                    return ("benchmark");
+                case "getBukkitVersion":
+                    return ("1.8.8-R0.1-SNAPSHOT");
+                case "getLogger":
+                    return (logger);
+                case "getPluginManager":
+                    return (pluginManager);
+                case "getScheduler":
+                    return (scheduler);
+                case "getConsoleSender":
+                    return (console);
+                case "isPrimaryThread":
+                    return (true);
+                case "getOnlinePlayers":
+                    return (Collections.unmodifiableList(onlinePlayers));
+                case "getPlayer":
+                case "getPlayerExact":
+                    return (args[0] instanceof UUID ? playersByUuid.get(args[0]) : playersByName.get(((String) args[0]).toLowerCase()));
+                case "getOfflinePlayer":
+                    UUID uuid = args[0] instanceof UUID ? (UUID) args[0] : uuidOf((String) args[0]);
+                    Player online = playersByUuid.get(uuid);
+                    return (online != null ? online : offlinePlayer(uuid, args[0] instanceof String ? (String) args[0] : null));
+                case "getWorld":
+                    if (args[0] instanceof String) {
+                        return (worldsByName.get(((String) args[0]).toLowerCase()));
+                    }
+
+                    for (World world : worldsByName.values()) {
+                        if (world.getUID().equals(args[0])) {
+                            return (world);
+                        }
+                    }
+
+                    return (null);
+                case "getWorlds":
+                    return (new ArrayList<>(worldsByName.values()));
+                default:
+                    return (DEFAULT);
+            }
+        });
+
+        return (server[0]);
+    }
+
+    static Player player(String name, World world) {
+        UUID uuid = uuidOf(name);
+
+        return (create(Player.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "getDisplayName":
+                case "getPlayerListName":
+                    return (name);
+                case "getUniqueId":
+                    return (uuid);
+                case "getWorld":
+                    return (world);
+                case "isOp":
+                case "isOnline":
+                case "hasPermission":
+                case "isPermissionSet":
+                case "canSee":
+                    return (true);
+                default:
+                    return (DEFAULT);
+            }
+        }));
+    }
+
+    static World world(String name) {
+        UUID uuid = uuidOf(name);
+
+        return (create(World.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return (name);
+                case "getUID":
+                    return (uuid);
+                default:
+                    return (DEFAULT);
+            }
+        }));
+    }
+
+    static OfflinePlayer offlinePlayer(UUID uuid, String name) {
+        return (create(OfflinePlayer.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return (name);
+                case "getUniqueId":
+                    return (uuid);
+                default:
+                    return (DEFAULT);
+            }
+        }));
+    }
+
+    static UUID uuidOf(String name) {
+        return (UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return (create(type, (method, args) -> DEFAULT));
+    }
+
+    private static <T> T create(Class<T> type, Handler handler) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1) {
+                        return (proxy == args[0]);
+                    }
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0) {
+                        return (System.identityHashCode(proxy));
+                    }
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0) {
+                        return (type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy)));
+                    }
+                    break;
+            }
+
+            Object answer = handler.answer(method, args);
+            return (answer == DEFAULT ? defaultValue(method.getReturnType()) : answer);
+        };
+
+        return (type.cast(Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[] { type }, invocationHandler)));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return (false);
+        } else if (type == char.class) {
+            return ('\0');
+        } else if (type == byte.class) {
+            return ((byte) 0);
+        } else if (type == short.class) {
+            return ((short) 0);
+        } else if (type == int.class) {
+            return (0);
+        } else if (type == long.class) {
+            return (0L);
+        } else if (type == float.class) {
+            return (0F);
+        } else if (type == double.class) {
+            return (0D);
+        } else if (type == List.class || type == Collection.class || type == Iterable.class) {
+            return (Collections.emptyList());
+        } else if (type == Set.class) {
+            return (Collections.emptySet());
+        } else if (type == Map.class) {
+            return (Collections.emptyMap());
+        } else if (type.isInterface()) {
+            return (stub(type));
+        }
+
+        return (null);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object answer(Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,57 @@
+package club.cloudcastgames.castlib.benchmarks;
+
+import club.cloudcastgames.castlib.command.CastCommandMap;
+import org.bukkit.entity.Player;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tab completion through {@link CastCommandMap#tabComplete}, for command names, subcommands and player arguments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TabCompleteBenchmark {
+    @Param({ "10", "100", "1000", "5000" })
+    private int commands;
+    @Param({ "1", "100", "1000" })
+    private int players;
+
+    private Player sender;
+    private CastCommandMap commandMap;
+    private String playerArgument;
+
+    @Setup
+    public void setup() {
+        BenchmarkServer.start(commands, players);
+
+        sender = BenchmarkServer.getPlayer(0);
+        commandMap = new CastCommandMap(BenchmarkServer.getServer());
+        playerArgument = BenchmarkServer.getMiddleCommand() + " Player1";
+    }
+
+    @Benchmark
+    public List<String> commandName() {
+        return (commandMap.tabComplete(sender, "cmd1"));
+    }
+
+    @Benchmark
+    public List<String> subcommand() {
+        return (commandMap.tabComplete(sender, "grp1 sub1"));
+    }
+
+    @Benchmark
+    public List<String> playerArgument() {
+        return (commandMap.tabComplete(sender, playerArgument));
+    }
+
+    @Benchmark
+    public List<String> unknownCommand() {
+        return (commandMap.tabComplete(sender, "unknown "));
+    }
+}
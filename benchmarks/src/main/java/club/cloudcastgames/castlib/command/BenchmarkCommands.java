@@ -0,0 +1,86 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.command.param.Param;
+import club.cloudcastgames.castlib.command.param.ParameterData;
+import org.bukkit.entity.Player;
+
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registers generated commands for the benchmarks.
+ * This is in CastLib's command package so it can implement the annotations the way the annotation processor does.
+ */
+public final class BenchmarkCommands {
+    // Written by every benchmark command, so their bodies can't be optimized away.
+    public static volatile Object sink;
+
+    private BenchmarkCommands() {}
+
+    /**
+     * Registers commands taking a player and an optional amount, like most real commands, in one batch.
+     *
+     * @param names The commands' names; they may contain spaces for subcommands.
+     */
+    public static void register(List<String> names) {
+        List<CommandData> commands = new ArrayList<>();
+
+        for (String name : names) {
+            commands.add(new CommandData(command(name),
+                    Arrays.asList(new ParameterData(param("target", "", false), Player.class), new ParameterData(param("amount", "1", false), int.class)),
+                    (sender, arguments) -> sink = arguments[1],
+                    "benchmark",
+                    false));
+        }
+
+        CastCommandHandler.getRegistry().register(null, commands);
+    }
+
+    /**
+     * Registers commands which take any arguments (as a single wildcard string), in one batch.
+     *
+     * @param names   The commands' names; they may contain spaces for subcommands.
+     * @param invoker What the commands do.
+     */
+    public static void registerWildcard(List<String> names, CommandInvoker invoker) {
+        List<CommandData> commands = new ArrayList<>();
+
+        for (String name : names) {
+            // The default isn't empty, so running the command without arguments isn't a usage error.
+            commands.add(new CommandData(command(name), Collections.singletonList(new ParameterData(param("arguments", "-", true), String.class)), invoker, "benchmark", false));
+        }
+
+        CastCommandHandler.getRegistry().register(null, commands);
+    }
+
+    private static Command command(String name) {
+        return (new Command() {
+            public String[] names() { return (new String[] { name }); }
+            public String description() { return ("A generated benchmark command."); }
+            public String permission() { return ("castlib.benchmark"); }
+            public boolean async() { return (false); }
+            public boolean hidden() { return (false); }
+            public String asyncPool() { return ("default"); }
+            public boolean exclusive() { return (false); }
+            public long timeout() { return (0); }
+            public long cooldown() { return (0); }
+            public int rateLimit() { return (0); }
+            public int globalRateLimit() { return (0); }
+            public long ratePeriod() { return (1000); }
+            public Class<? extends Annotation> annotationType() { return (Command.class); }
+        });
+    }
+
+    private static Param param(String name, String defaultValue, boolean wildcard) {
+        return (new Param() {
+            public String name() { return (name); }
+            public boolean wildcard() { return (wildcard); }
+            public String defaultValue() { return (defaultValue); }
+            public String[] tabCompleteFlags() { return (new String[] { "" }); }
+            public Class<? extends Annotation> annotationType() { return (Param.class); }
+        });
+    }
+}
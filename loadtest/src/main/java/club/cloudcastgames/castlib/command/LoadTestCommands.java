@@ -0,0 +1,121 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.command.param.Param;
+import club.cloudcastgames.castlib.command.param.ParameterData;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+import java.lang.annotation.Annotation;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Registers the commands the load test's players run.
+ * This is in CastLib's command package so it can implement the annotations the way the annotation processor does.
+ * <ul>
+ *     <li>/give &lt;player&gt; [amount], /msg &lt;player&gt; &lt;message...&gt; and /tp &lt;player&gt; [world]: sync, for everyone.</li>
+ *     <li>/report &lt;amount&gt; [period]: async, with a little work in the pool and the result applied on the main thread.</li>
+ *     <li>/admin reload and /admin kick &lt;player&gt;: for operators only, so most players are denied.</li>
+ *     <li>/cmd0 to /cmd{n}: fillers taking a player and an amount, so the command tree has a realistic size.</li>
+ * </ul>
+ */
+public final class LoadTestCommands {
+    public static final String PERMISSION = "castlib.loadtest";
+    public static final String ADMIN_PERMISSION = "castlib.loadtest.admin";
+
+    // Written by every command, so their bodies can't be optimized away.
+    public static volatile Object sink;
+
+    private LoadTestCommands() {}
+
+    /**
+     * Registers the commands in one batch.
+     *
+     * @param fillers The number of filler commands.
+     */
+    public static void register(int fillers) {
+        List<CommandData> commands = new ArrayList<>();
+
+        commands.add(new CommandData(command("give", PERMISSION, false),
+                Arrays.asList(new ParameterData(param("target", "", false), Player.class), new ParameterData(param("amount", "1", false), int.class)),
+                (sender, arguments) -> sink = arguments[1],
+                "give",
+                true));
+        commands.add(new CommandData(command("msg", PERMISSION, false),
+                Arrays.asList(new ParameterData(param("target", "", false), Player.class), new ParameterData(param("message", "", true), String.class)),
+                (sender, arguments) -> sink = arguments[1],
+                "msg",
+                true));
+        commands.add(new CommandData(command("tp", PERMISSION, false),
+                Arrays.asList(new ParameterData(param("target", "", false), Player.class), new ParameterData(param("world", "world", false), World.class)),
+                (sender, arguments) -> sink = arguments[1],
+                "tp",
+                true));
+        commands.add(new CommandData(command("report", PERMISSION, true),
+                Arrays.asList(new ParameterData(param("amount", "", false), long.class), new ParameterData(param("period", "1h", false), Duration.class)),
+                (sender, arguments) -> {
+                    // Some work off the main thread, then the result goes back to it.
+                    long total = 0;
+
+                    for (long index = 0; index < (long) arguments[0] % 10_000; index++) {
+                        total += index * ((Duration) arguments[1]).getSeconds();
+                    }
+
+                    long result = total;
+                    CommandContext.current().thenSync(() -> sink = result);
+                },
+                "report",
+                true));
+        commands.add(new CommandData(command("admin reload", ADMIN_PERMISSION, false),
+                Collections.emptyList(),
+                (sender, arguments) -> sink = sender,
+                "adminReload",
+                true));
+        commands.add(new CommandData(command("admin kick", ADMIN_PERMISSION, false),
+                Collections.singletonList(new ParameterData(param("target", "", false), Player.class)),
+                (sender, arguments) -> sink = arguments[0],
+                "adminKick",
+                true));
+
+        for (int index = 0; index < fillers; index++) {
+            commands.add(new CommandData(command("cmd" + index, PERMISSION, false),
+                    Arrays.asList(new ParameterData(param("target", "", false), Player.class), new ParameterData(param("amount", "1", false), int.class)),
+                    (sender, arguments) -> sink = arguments[1],
+                    "filler",
+                    true));
+        }
+
+        CastCommandHandler.getRegistry().register(null, commands);
+    }
+
+    private static Command command(String name, String permission, boolean async) {
+        return (new Command() {
+            public String[] names() { return (new String[] { name }); }
+            public String description() { return ("A load test command."); }
+            public String permission() { return (permission); }
+            public boolean async() { return (async); }
+            public boolean hidden() { return (false); }
+            public String asyncPool() { return ("default"); }
+            public boolean exclusive() { return (false); }
+            public long timeout() { return (0); }
+            public long cooldown() { return (0); }
+            public int rateLimit() { return (0); }
+            public int globalRateLimit() { return (0); }
+            public long ratePeriod() { return (1000); }
+            public Class<? extends Annotation> annotationType() { return (Command.class); }
+        });
+    }
+
+    private static Param param(String name, String defaultValue, boolean wildcard) {
+        return (new Param() {
+            public String name() { return (name); }
+            public boolean wildcard() { return (wildcard); }
+            public String defaultValue() { return (defaultValue); }
+            public String[] tabCompleteFlags() { return (new String[] { "" }); }
+            public Class<? extends Annotation> annotationType() { return (Param.class); }
+        });
+    }
+}
@@ -0,0 +1,12 @@
+package club.cloudcastgames.castlib.loadtest;
+
+import org.bukkit.command.SimpleCommandMap;
+
+/**
+ * The stand-in server's CraftServer#getCommandMap, which CastLib looks up on the server's class to register its commands
+ * in direct mode. It's public so the lookup (through the public lookup) can see it on the proxy.
+ */
+public interface CommandMapServer {
+
+    SimpleCommandMap getCommandMap();
+}
@@ -0,0 +1,92 @@
+package club.cloudcastgames.castlib.loadtest;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * The stand-in server's event delivery: listeners are registered the way Bukkit registers them,
+ * and events are passed to their handlers by priority, skipping handlers which ignore cancelled events once one is.
+ * Handlers are called through method handles, so delivering an event allocates nothing of its own.
+ */
+final class EventBus {
+    // Replaced as a whole on registration, so delivering an event doesn't copy or lock anything.
+    private volatile Handler[] handlers = new Handler[0];
+
+    /**
+     * Registers every {@link EventHandler} method of a listener.
+     */
+    synchronized void register(Listener listener) {
+        List<Handler> registered = new ArrayList<>(Arrays.asList(handlers));
+
+        for (Method method : listener.getClass().getDeclaredMethods()) {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+
+            if (annotation == null || method.getParameterCount() != 1 || !Event.class.isAssignableFrom(method.getParameterTypes()[0])) {
+                continue;
+            }
+
+            try {
+                method.setAccessible(true);
+                MethodHandle handle = MethodHandles.lookup().unreflect(method).bindTo(listener).asType(MethodType.methodType(void.class, Event.class));
+                registered.add(new Handler(handle, method.getParameterTypes()[0], annotation));
+            } catch (IllegalAccessException ex) {
+                throw (new IllegalStateException("Cannot access event handler " + method, ex));
+            }
+        }
+
+        // Sorting is stable, so handlers of the same priority keep the order they were registered in.
+        registered.sort(Comparator.comparingInt(handler -> handler.priority));
+        handlers = registered.toArray(new Handler[0]);
+    }
+
+    /**
+     * Passes an event to every handler of its type.
+     *
+     * @return The event.
+     */
+    <T extends Event> T call(T event) {
+        for (Handler handler : handlers) {
+            if (!handler.eventType.isInstance(event)) {
+                continue;
+            }
+
+            if (handler.ignoreCancelled && event instanceof Cancellable && ((Cancellable) event).isCancelled()) {
+                continue;
+            }
+
+            try {
+                handler.handle.invokeExact((Event) event);
+            } catch (Throwable ex) {
+                // A failing handler doesn't stop the others, like on a real server.
+                ex.printStackTrace();
+            }
+        }
+
+        return (event);
+    }
+
+    private static final class Handler {
+        private final MethodHandle handle;
+        private final Class<?> eventType;
+        private final int priority;
+        private final boolean ignoreCancelled;
+
+        private Handler(MethodHandle handle, Class<?> eventType, EventHandler annotation) {
+            this.handle = handle;
+            this.eventType = eventType;
+            this.priority = annotation.priority().getSlot();
+            this.ignoreCancelled = annotation.ignoreCancelled();
+        }
+    }
+}
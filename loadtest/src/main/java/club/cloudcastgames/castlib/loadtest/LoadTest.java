@@ -0,0 +1,449 @@
+package club.cloudcastgames.castlib.loadtest;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.CastCommandMap;
+import club.cloudcastgames.castlib.command.LoadTestCommands;
+import club.cloudcastgames.castlib.command.stats.CommandMetrics;
+import club.cloudcastgames.castlib.command.stats.LatencyHistogram;
+import org.bukkit.Bukkit;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A headless load test: CastLib enabled on a stand-in server (see {@link LoadTestServer}), with synthetic players
+ * running commands and tab completing on a simulated tick loop.
+ * <p>
+ * Every tick, the scheduler's due tasks run (CastLib's own, like the command queue and async commands' sync tasks),
+ * then every player whose think time is up does one action: a command or a tab completion, which reach CastLib the way
+ * they would on a real server (see {@link LoadTestServer}). In direct mode (the default, like CastLib's), commands are
+ * dispatched through the server's command map; with --mode preprocess, they're intercepted by
+ * {@link club.cloudcastgames.castlib.command.CastCommandHandler#onCommandPreProcess(PlayerCommandPreprocessEvent)}
+ * and {@link club.cloudcastgames.castlib.command.CastCommandHandler#onConsoleCommand(ServerCommandEvent)},
+ * and tab completed through {@link CastCommandMap#tabComplete}. The commands are the ones in {@link LoadTestCommands}.
+ * <p>
+ * At the end, it reports the commands per second, how much of each tick was spent inside CastLib,
+ * the latency of commands and tab completions, and the allocation rate. The warmup isn't included.
+ * <pre>
+ * LoadTest [--mode direct|preprocess] [--players n] [--duration seconds] [--warmup seconds] [--think milliseconds] [--console per-second]
+ *          [--operators share] [--fillers n] [--mix action=weight,...] [--tps n] [--seed n]
+ * </pre>
+ * The actions in the mix are give, msg, tp, report (async), admin (mostly denied), typo (an unknown command),
+ * filler and tab. Think times are random, averaging --think.
+ */
+public final class LoadTest {
+    private static final long REPORT_INTERVAL = TimeUnit.SECONDS.toNanos(5);
+
+    private final LoadTestServer server;
+    private final Random random;
+    private final int fillers;
+    private final Action[] mix;
+    private final long thinkTicks;
+    private final double consolePerTick;
+    private final long tickNanos;
+    private final com.sun.management.ThreadMXBean threads;
+    private final boolean measureAllocation;
+    // The tick each player does their next action in.
+    private final long[] nextAction;
+
+    // Statistics, reset after the warmup.
+    private Map<Action, LatencyHistogram> latencies;
+    private LatencyHistogram commandLatency;
+    private LatencyHistogram tabLatency;
+    private LatencyHistogram tickLatency;
+    private long ticks;
+    private long overruns;
+    private long actions;
+    private long allocatedInside;
+
+    private LoadTest(LoadTestServer server, Random random, int fillers, Action[] mix, long thinkTicks, double consolePerTick, long tickNanos) {
+        this.server = server;
+        this.random = random;
+        this.fillers = fillers;
+        this.mix = mix;
+        this.thinkTicks = thinkTicks;
+        this.consolePerTick = consolePerTick;
+        this.tickNanos = tickNanos;
+        this.threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.measureAllocation = threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+        this.nextAction = new long[server.players.size()];
+
+        for (int player = 0; player < nextAction.length; player++) {
+            // Spread over the first think time, so everyone doesn't act in the same tick.
+            nextAction[player] = 1 + (long) (random.nextDouble() * thinkTicks);
+        }
+
+        reset();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String mode = "direct";
+        int players = 200;
+        long duration = 60;
+        long warmup = 10;
+        long think = 2000;
+        double console = 1;
+        double operators = 0.05;
+        int fillers = 500;
+        String mix = "give=25,msg=20,tp=10,report=5,admin=5,typo=5,filler=10,tab=20";
+        int tps = 20;
+        long seed = 42;
+
+        for (int index = 0; index < args.length; index++) {
+            switch (args[index]) {
+                case "--mode":
+                    mode = args[++index].toLowerCase(Locale.ROOT);
+                    break;
+                case "--players":
+                    players = Integer.parseInt(args[++index]);
+                    break;
+                case "--duration":
+                    duration = Long.parseLong(args[++index]);
+                    break;
+                case "--warmup":
+                    warmup = Long.parseLong(args[++index]);
+                    break;
+                case "--think":
+                    think = Long.parseLong(args[++index]);
+                    break;
+                case "--console":
+                    console = Double.parseDouble(args[++index]);
+                    break;
+                case "--operators":
+                    operators = Double.parseDouble(args[++index]);
+                    break;
+                case "--fillers":
+                    fillers = Integer.parseInt(args[++index]);
+                    break;
+                case "--mix":
+                    mix = args[++index];
+                    break;
+                case "--tps":
+                    tps = Integer.parseInt(args[++index]);
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(args[++index]);
+                    break;
+                default:
+                    System.err.println("Unknown option " + args[index] + "; see LoadTest's documentation for the options.");
+                    System.exit(1);
+            }
+        }
+
+        Random random = new Random(seed);
+        if (!mode.equals("direct") && !mode.equals("preprocess")) {
+            System.err.println("The mode is either direct or preprocess.");
+            System.exit(1);
+        }
+
+        LoadTestServer server = new LoadTestServer(Math.max(1, players), operators, random, mode.equals("direct"));
+        CastLib plugin = enable(server, mode);
+
+        LoadTestCommands.register(fillers);
+
+        for (Player player : server.players) {
+            server.events.call(new PlayerJoinEvent(player, null));
+        }
+
+        long tickNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, tps);
+        LoadTest test = new LoadTest(server, random, fillers, parseMix(mix),
+                Math.max(1, TimeUnit.MILLISECONDS.toNanos(think) / tickNanos), console / Math.max(1, tps), tickNanos);
+
+        System.out.printf(Locale.ROOT, "%s mode, %d players, %d filler commands, %d TPS, think time %dms, mix %s%n", mode, players, fillers, tps, think, mix);
+        System.out.printf(Locale.ROOT, "Warming up for %ds...%n", warmup);
+        test.run(TimeUnit.SECONDS.toNanos(warmup), false);
+        test.reset();
+        System.out.printf(Locale.ROOT, "Measuring for %ds...%n", duration);
+
+        long start = System.nanoTime();
+        long allocatedBefore = allocatedByAllThreads(test.threads);
+        long[] gcBefore = gcTotals();
+
+        test.run(TimeUnit.SECONDS.toNanos(duration), true);
+        test.report(System.nanoTime() - start, allocatedByAllThreads(test.threads) - allocatedBefore, gcTotals(), gcBefore);
+
+        plugin.onDisable();
+        // The async pools and caches have threads of their own.
+        System.exit(0);
+    }
+
+    private static CastLib enable(LoadTestServer server, String mode) throws IOException {
+        File dataFolder = Files.createTempDirectory("castlib-loadtest").toFile();
+
+        // Statistics aren't written to disk.
+        Files.write(new File(dataFolder, "config.yml").toPath(), ("commands:\n  mode: " + mode + "\nstats:\n  dump-interval: 0\n").getBytes(StandardCharsets.UTF_8));
+        Bukkit.setServer(server.server);
+
+        CastLib plugin = new CastLib(new JavaPluginLoader(server.server), new PluginDescriptionFile("CastLib", "loadtest", CastLib.class.getName()), dataFolder, new File(dataFolder, "CastLib.jar"));
+        plugin.onEnable();
+        return (plugin);
+    }
+
+    private static Action[] parseMix(String mix) {
+        List<Action> weighted = new ArrayList<>();
+
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.split("=");
+            Action action = Action.valueOf(parts[0].trim().toUpperCase(Locale.ROOT));
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+
+            for (int index = 0; index < weight; index++) {
+                weighted.add(action);
+            }
+        }
+
+        if (weighted.isEmpty()) {
+            throw (new IllegalArgumentException("The mix has no actions."));
+        }
+
+        return (weighted.toArray(new Action[0]));
+    }
+
+    private void reset() {
+        latencies = new EnumMap<>(Action.class);
+        commandLatency = new LatencyHistogram();
+        tabLatency = new LatencyHistogram();
+        tickLatency = new LatencyHistogram();
+        ticks = 0;
+        overruns = 0;
+        actions = 0;
+        allocatedInside = 0;
+
+        for (Action action : Action.values()) {
+            latencies.put(action, new LatencyHistogram());
+        }
+    }
+
+    /**
+     * Runs the tick loop for a while, at the configured TPS (or as fast as it can when CastLib takes longer than a tick).
+     */
+    private void run(long durationNanos, boolean progress) {
+        long start = System.nanoTime();
+        long nextTick = start;
+        long nextReport = start + REPORT_INTERVAL;
+        long actionsAtReport = 0;
+
+        while (System.nanoTime() - start < durationNanos) {
+            long tickStart = System.nanoTime();
+            long inside = tick();
+
+            ticks++;
+            tickLatency.record(inside);
+
+            if (System.nanoTime() - tickStart > tickNanos) {
+                overruns++;
+            }
+
+            if (progress && tickStart >= nextReport) {
+                System.out.printf(Locale.ROOT, "  %3ds: %.0f actions/s, CastLib p99 %s per tick%n", TimeUnit.NANOSECONDS.toSeconds(tickStart - start),
+                        (actions - actionsAtReport) / (REPORT_INTERVAL / 1e9), CommandMetrics.formatNanos(tickLatency.getPercentile(99)));
+                actionsAtReport = actions;
+                nextReport += REPORT_INTERVAL;
+            }
+
+            nextTick += tickNanos;
+            long wait = nextTick - System.nanoTime();
+
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                // Fell behind, like a lagging server; don't try to catch up.
+                nextTick = System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Runs one tick.
+     *
+     * @return How long was spent inside CastLib, in nanoseconds.
+     */
+    private long tick() {
+        long inside = server.scheduler.tick();
+        long tick = server.scheduler.getCurrentTick();
+
+        for (int player = 0; player < nextAction.length; player++) {
+            if (nextAction[player] > tick) {
+                continue;
+            }
+
+            inside += act(server.players.get(player), mix[random.nextInt(mix.length)]);
+            // Exponential think times, like independent players.
+            nextAction[player] = tick + 1 + (long) (-Math.log(1 - random.nextDouble()) * thinkTicks);
+        }
+
+        // Fractional rates carry over, so 0.5 per tick is one every other tick.
+        int consoleCommands = (int) consolePerTick + (random.nextDouble() < consolePerTick % 1 ? 1 : 0);
+
+        for (int index = 0; index < consoleCommands; index++) {
+            ServerCommandEvent event = new ServerCommandEvent(server.console, "give " + randomPlayer() + " " + (1 + random.nextInt(64)));
+            inside += measure(Action.CONSOLE, false, () -> server.dispatch(event));
+        }
+
+        return (inside);
+    }
+
+    /**
+     * Does one action as a player.
+     *
+     * @return How long it took, in nanoseconds.
+     */
+    private long act(Player player, Action action) {
+        if (action == Action.TAB) {
+            String line = tabLine();
+            return (measure(action, true, () -> server.tabComplete(player, line)));
+        }
+
+        // Built before measuring: the event copies the online players, which is the server's cost, not CastLib's.
+        PlayerCommandPreprocessEvent event = new PlayerCommandPreprocessEvent(player, commandLine(action));
+        return (measure(action, false, () -> server.dispatch(event)));
+    }
+
+    private long measure(Action action, boolean tab, Runnable call) {
+        long allocatedBefore = measureAllocation ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : 0;
+        long start = System.nanoTime();
+
+        call.run();
+
+        long took = System.nanoTime() - start;
+
+        if (measureAllocation) {
+            allocatedInside += threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocatedBefore;
+        }
+
+        actions++;
+        latencies.get(action).record(took);
+        (tab ? tabLatency : commandLatency).record(took);
+        return (took);
+    }
+
+    private String commandLine(Action action) {
+        switch (action) {
+            case GIVE:
+                return ("/give " + randomPlayer() + " " + (1 + random.nextInt(64)));
+            case MSG:
+                return ("/msg " + randomPlayer() + " hey, are you coming to spawn? " + random.nextInt(100));
+            case TP:
+                return ("/tp " + randomPlayer() + (random.nextBoolean() ? " world_nether" : ""));
+            case REPORT:
+                return ("/report " + random.nextInt(100_000) + " " + (1 + random.nextInt(24)) + "h");
+            case ADMIN:
+                return (random.nextBoolean() ? "/admin reload" : "/admin kick " + randomPlayer());
+            case TYPO:
+                return ("/giev " + randomPlayer());
+            case FILLER:
+                return ("/cmd" + random.nextInt(Math.max(1, fillers)) + " " + randomPlayer() + " 3");
+            default:
+                throw (new IllegalArgumentException(action.name()));
+        }
+    }
+
+    private String tabLine() {
+        String player = randomPlayer();
+
+        switch (random.nextInt(4)) {
+            case 0:
+                // A command name.
+                return ("cmd" + random.nextInt(10));
+            case 1:
+                // A player's name, a few letters in.
+                return ("give " + player.substring(0, Math.min(player.length(), 1 + random.nextInt(player.length()))));
+            case 2:
+                return ("tp " + player + " w");
+            default:
+                return ("admin ");
+        }
+    }
+
+    private String randomPlayer() {
+        return (server.players.get(random.nextInt(server.players.size())).getName());
+    }
+
+    private void report(long elapsed, long allocatedEverywhere, long[] gcAfter, long[] gcBefore) {
+        double seconds = elapsed / 1e9;
+
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Throughput: %.0f commands/s, %.0f tab completions/s over %d ticks (%.1f TPS)%n",
+                commandLatency.getCount() / seconds, tabLatency.getCount() / seconds, ticks, ticks / seconds);
+        System.out.printf(Locale.ROOT, "Time in CastLib per tick: mean %s, p50 %s, p99 %s, max %s (%.2f%% of the tick budget on average)%n",
+                CommandMetrics.formatNanos(tickLatency.getMean()), CommandMetrics.formatNanos(tickLatency.getPercentile(50)),
+                CommandMetrics.formatNanos(tickLatency.getPercentile(99)), CommandMetrics.formatNanos(tickLatency.getMax()),
+                tickLatency.getMean() * 100 / tickNanos);
+        System.out.printf(Locale.ROOT, "Ticks over budget: %d (%.2f%%)%n", overruns, ticks == 0 ? 0 : overruns * 100.0 / ticks);
+        System.out.printf(Locale.ROOT, "Commands: %s%n", describe(commandLatency));
+        System.out.printf(Locale.ROOT, "Tab completions: %s%n", describe(tabLatency));
+
+        for (Map.Entry<Action, LatencyHistogram> entry : latencies.entrySet()) {
+            if (entry.getValue().getCount() > 0) {
+                System.out.printf(Locale.ROOT, "  %-8s %s%n", entry.getKey().name().toLowerCase(Locale.ROOT), describe(entry.getValue()));
+            }
+        }
+
+        if (measureAllocation) {
+            System.out.printf(Locale.ROOT, "Allocation: %.2f MB/s inside CastLib on the tick thread (%.0f bytes per action), %.2f MB/s by all threads%n",
+                    allocatedInside / seconds / 1e6, actions == 0 ? 0 : (double) allocatedInside / actions, allocatedEverywhere / seconds / 1e6);
+        } else {
+            System.out.println("Allocation: not measured, as this JVM doesn't support per-thread allocation counters.");
+        }
+
+        System.out.printf(Locale.ROOT, "GC: %d collections, %dms total%n", gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+        System.out.printf(Locale.ROOT, "Messages sent to senders: %d%n", server.messages.sum());
+    }
+
+    private static String describe(LatencyHistogram histogram) {
+        return (String.format(Locale.ROOT, "%d, p50 %s, p90 %s, p99 %s, max %s", histogram.getCount(),
+                CommandMetrics.formatNanos(histogram.getPercentile(50)), CommandMetrics.formatNanos(histogram.getPercentile(90)),
+                CommandMetrics.formatNanos(histogram.getPercentile(99)), CommandMetrics.formatNanos(histogram.getMax())));
+    }
+
+    private static long allocatedByAllThreads(com.sun.management.ThreadMXBean threads) {
+        if (!threads.isThreadAllocatedMemorySupported()) {
+            return (0);
+        }
+
+        long total = 0;
+
+        // Threads which ended in between aren't counted, so this is a lower bound.
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, allocated);
+        }
+
+        return (total);
+    }
+
+    private static long[] gcTotals() {
+        long[] totals = new long[2];
+
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, collector.getCollectionCount());
+            totals[1] += Math.max(0, collector.getCollectionTime());
+        }
+
+        return (totals);
+    }
+
+    /**
+     * What a player does, or the console (which only gives).
+     */
+    private enum Action {
+        GIVE, MSG, TP, REPORT, ADMIN, TYPO, FILLER, TAB, CONSOLE
+    }
+}
@@ -0,0 +1,395 @@
+package club.cloudcastgames.castlib.loadtest;
+
+import club.cloudcastgames.castlib.command.CastCommandMap;
+import club.cloudcastgames.castlib.command.LoadTestCommands;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.command.CommandException;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.entity.Player;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.server.ServerCommandEvent;
+import org.bukkit.permissions.Permission;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * An in-process stand-in for the parts of Bukkit CastLib talks to, for the load test.
+ * <p>
+ * Like the benchmarks' stand-ins, everything is a proxy: the methods CastLib relies on are answered from plain collections,
+ * and every other method returns a default (0, false, an empty collection or another stand-in).
+ * Unlike them, this server runs: its scheduler runs tasks when the tick loop calls {@link TickScheduler#tick()},
+ * registered listeners get the events passed to {@link #events}, and only the tick thread is the primary thread.
+ * Commands go through the same steps as on a real server: the preprocess (or server command) event, then the command map
+ * if no listener cancelled it. In direct mode, the server has a command map CastLib registers its commands in
+ * (see {@link CommandMapServer}); in preprocess mode it doesn't, so CastLib falls back to intercepting the events,
+ * and tab completions go through a {@link CastCommandMap} like they would once it's swapped in.
+ * Players are online from the start (their join events have to be called), and only operators have admin permissions.
+ */
+final class LoadTestServer {
+    // Returned by a handler to fall back to the default answer.
+    private static final Object DEFAULT = new Object();
+
+    final Server server;
+    final ConsoleCommandSender console;
+    final List<Player> players = new ArrayList<>();
+    final EventBus events = new EventBus();
+    final TickScheduler scheduler = new TickScheduler();
+    // Messages sent to players and the console, such as usage errors and denials.
+    final LongAdder messages = new LongAdder();
+    final SimpleCommandMap commandMap;
+    private final Thread tickThread;
+
+    /**
+     * Creates a server with the given online players (named Player0, Player1, ...) and three worlds.
+     * The thread creating it is the tick thread.
+     *
+     * @param playerCount The number of players.
+     * @param operators   The share of players (0 to 1) who are operators.
+     * @param random      Picks the operators.
+     * @param direct      If CastLib can register its commands in the server's command map.
+     */
+    LoadTestServer(int playerCount, double operators, Random random, boolean direct) {
+        Map<String, Player> playersByName = new HashMap<>();
+        Map<UUID, Player> playersByUuid = new HashMap<>();
+        Map<String, World> worldsByName = new LinkedHashMap<>();
+        Logger logger = Logger.getLogger("CastLib-LoadTest");
+        Server[] server = new Server[1];
+
+        tickThread = Thread.currentThread();
+
+        for (String name : new String[] { "world", "world_nether", "world_the_end" }) {
+            worldsByName.put(name.toLowerCase(), world(name));
+        }
+
+        World defaultWorld = worldsByName.get("world");
+
+        for (int index = 0; index < playerCount; index++) {
+            Player player = player(server, "Player" + index, defaultWorld, random.nextDouble() < operators);
+
+            players.add(player);
+            playersByName.put(player.getName().toLowerCase(), player);
+            playersByUuid.put(player.getUniqueId(), player);
+        }
+
+        List<Player> onlinePlayers = Collections.unmodifiableList(players);
+
+        console = create(ConsoleCommandSender.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return ("CONSOLE");
+                case "isOp":
+                case "hasPermission":
+                case "isPermissionSet":
+                    return (true);
+                case "sendMessage":
+                    messages.increment();
+                    return (null);
+                case "getServer":
+                    return (server[0]);
+                default:
+                    return (DEFAULT);
+            }
+        });
+
+        PluginManager pluginManager = create(PluginManager.class, (method, args) -> {
+            switch (method.getName()) {
+                case "registerEvents":
+                    events.register((Listener) args[0]);
+                    return (null);
+                case "callEvent":
+                    events.call((org.bukkit.event.Event) args[0]);
+                    return (null);
+                default:
+                    return (DEFAULT);
+            }
+        });
+        BukkitScheduler bukkitScheduler = create(BukkitScheduler.class, this::answerScheduler);
+
+        SimpleCommandMap[] commandMap = new SimpleCommandMap[1];
+        Handler serverHandler = (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return ("CastLib-LoadTest");
+                case "getCommandMap":
+                    return (commandMap[0]);
+                case "getVersion":
+                    return ("loadtest");
+                case "getBukkitVersion":
+                    return ("1.8.8-R0.1-SNAPSHOT");
+                case "getLogger":
+                    return (logger);
+                case "getPluginManager":
+                    return (pluginManager);
+                case "getScheduler":
+                    return (bukkitScheduler);
+                case "getConsoleSender":
+                    return (console);
+                case "isPrimaryThread":
+                    return (Thread.currentThread() == tickThread);
+                case "getOnlinePlayers":
+                    return (onlinePlayers);
+                case "getPlayer":
+                case "getPlayerExact":
+                    return (args[0] instanceof UUID ? playersByUuid.get(args[0]) : playersByName.get(((String) args[0]).toLowerCase()));
+                case "getOfflinePlayer":
+                    UUID uuid = args[0] instanceof UUID ? (UUID) args[0] : uuidOf((String) args[0]);
+                    Player online = playersByUuid.get(uuid);
+                    return (online != null ? online : offlinePlayer(uuid, args[0] instanceof String ? (String) args[0] : null));
+                case "getWorld":
+                    if (args[0] instanceof String) {
+                        return (worldsByName.get(((String) args[0]).toLowerCase()));
+                    }
+
+                    for (World world : worldsByName.values()) {
+                        if (world.getUID().equals(args[0])) {
+                            return (world);
+                        }
+                    }
+
+                    return (null);
+                case "getWorlds":
+                    return (new ArrayList<>(worldsByName.values()));
+                default:
+                    return (DEFAULT);
+            }
+        };
+
+        server[0] = direct ? create(Server.class, serverHandler, CommandMapServer.class) : create(Server.class, serverHandler);
+        commandMap[0] = direct ? new SimpleCommandMap(server[0]) : new CastCommandMap(server[0]);
+
+        this.server = server[0];
+        this.commandMap = commandMap[0];
+    }
+
+    /**
+     * Runs a player's command the way the server does: the preprocess event first, then the command map.
+     */
+    void dispatch(PlayerCommandPreprocessEvent event) {
+        events.call(event);
+
+        if (!event.isCancelled()) {
+            dispatch(event.getPlayer(), event.getMessage().substring(1));
+        }
+    }
+
+    /**
+     * Runs a console command the way the server does: the server command event first, then the command map.
+     */
+    void dispatch(ServerCommandEvent event) {
+        events.call(event);
+
+        if (!event.isCancelled()) {
+            dispatch(event.getSender(), event.getCommand());
+        }
+    }
+
+    /**
+     * Tab completes a line (without a prepended '/') through the command map.
+     */
+    List<String> tabComplete(Player player, String line) {
+        return (commandMap.tabComplete(player, line));
+    }
+
+    private void dispatch(CommandSender sender, String line) {
+        try {
+            if (!commandMap.dispatch(sender, line)) {
+                sender.sendMessage("Unknown command. Type \"/help\" for help.");
+            }
+        } catch (CommandException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    private Object answerScheduler(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "runTask":
+                return (task(scheduler.schedule((Plugin) args[0], (Runnable) args[1], 0, -1, true)));
+            case "runTaskLater":
+                return (task(scheduler.schedule((Plugin) args[0], (Runnable) args[1], (long) args[2], -1, true)));
+            case "runTaskTimer":
+                return (task(scheduler.schedule((Plugin) args[0], (Runnable) args[1], (long) args[2], (long) args[3], true)));
+            case "runTaskAsynchronously":
+                return (task(scheduler.schedule((Plugin) args[0], (Runnable) args[1], 0, -1, false)));
+            case "runTaskLaterAsynchronously":
+                return (task(scheduler.schedule((Plugin) args[0], (Runnable) args[1], (long) args[2], -1, false)));
+            case "runTaskTimerAsynchronously":
+                return (task(scheduler.schedule((Plugin) args[0], (Runnable) args[1], (long) args[2], (long) args[3], false)));
+            case "scheduleSyncDelayedTask":
+                return (scheduler.schedule((Plugin) args[0], (Runnable) args[1], args.length > 2 ? (long) args[2] : 0, -1, true).id);
+            case "scheduleSyncRepeatingTask":
+                return (scheduler.schedule((Plugin) args[0], (Runnable) args[1], (long) args[2], (long) args[3], true).id);
+            case "cancelTask":
+                scheduler.cancel((int) args[0]);
+                return (null);
+            default:
+                return (DEFAULT);
+        }
+    }
+
+    private BukkitTask task(TickScheduler.Task task) {
+        return (create(BukkitTask.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getTaskId":
+                    return (task.id);
+                case "getOwner":
+                    return (task.owner);
+                case "isSync":
+                    return (task.sync);
+                case "cancel":
+                    task.cancelled = true;
+                    return (null);
+                default:
+                    return (DEFAULT);
+            }
+        }));
+    }
+
+    private Player player(Server[] server, String name, World world, boolean operator) {
+        UUID uuid = uuidOf(name);
+
+        return (create(Player.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                case "getDisplayName":
+                case "getPlayerListName":
+                    return (name);
+                case "getUniqueId":
+                    return (uuid);
+                case "getWorld":
+                    return (world);
+                case "getServer":
+                    return (server[0]);
+                case "isOp":
+                    return (operator);
+                case "hasPermission":
+                case "isPermissionSet":
+                    String permission = args[0] instanceof Permission ? ((Permission) args[0]).getName() : (String) args[0];
+                    return (operator || !permission.startsWith(LoadTestCommands.ADMIN_PERMISSION));
+                case "sendMessage":
+                    messages.increment();
+                    return (null);
+                case "isOnline":
+                case "canSee":
+                    return (true);
+                default:
+                    return (DEFAULT);
+            }
+        }));
+    }
+
+    private static World world(String name) {
+        UUID uuid = uuidOf(name);
+
+        return (create(World.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return (name);
+                case "getUID":
+                    return (uuid);
+                default:
+                    return (DEFAULT);
+            }
+        }));
+    }
+
+    private static org.bukkit.OfflinePlayer offlinePlayer(UUID uuid, String name) {
+        return (create(org.bukkit.OfflinePlayer.class, (method, args) -> {
+            switch (method.getName()) {
+                case "getName":
+                    return (name);
+                case "getUniqueId":
+                    return (uuid);
+                default:
+                    return (DEFAULT);
+            }
+        }));
+    }
+
+    static UUID uuidOf(String name) {
+        return (UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return (create(type, (method, args) -> DEFAULT));
+    }
+
+    private static <T> T create(Class<T> type, Handler handler, Class<?>... extraTypes) {
+        InvocationHandler invocationHandler = (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1) {
+                        return (proxy == args[0]);
+                    }
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0) {
+                        return (System.identityHashCode(proxy));
+                    }
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0) {
+                        return (type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy)));
+                    }
+                    break;
+            }
+
+            Object answer = handler.answer(method, args);
+            return (answer == DEFAULT ? defaultValue(method.getReturnType()) : answer);
+        };
+
+        Class<?>[] types = new Class<?>[extraTypes.length + 1];
+        types[0] = type;
+        System.arraycopy(extraTypes, 0, types, 1, extraTypes.length);
+
+        return (type.cast(Proxy.newProxyInstance(LoadTestServer.class.getClassLoader(), types, invocationHandler)));
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return (false);
+        } else if (type == char.class) {
+            return ('\0');
+        } else if (type == byte.class) {
+            return ((byte) 0);
+        } else if (type == short.class) {
+            return ((short) 0);
+        } else if (type == int.class) {
+            return (0);
+        } else if (type == long.class) {
+            return (0L);
+        } else if (type == float.class) {
+            return (0F);
+        } else if (type == double.class) {
+            return (0D);
+        } else if (type == List.class || type == Collection.class || type == Iterable.class) {
+            return (Collections.emptyList());
+        } else if (type == Set.class) {
+            return (Collections.emptySet());
+        } else if (type == Map.class) {
+            return (Collections.emptyMap());
+        } else if (type.isInterface()) {
+            return (stub(type));
+        }
+
+        return (null);
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+        Object answer(Method method, Object[] args) throws Throwable;
+    }
+}
@@ -0,0 +1,152 @@
+package club.cloudcastgames.castlib.loadtest;
+
+import org.bukkit.plugin.Plugin;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The stand-in server's scheduler, driven by the load test's tick loop.
+ * Sync tasks run on the tick thread when {@link #tick()} is called; async tasks are handed to a thread pool when they're due.
+ * Tasks can be scheduled from any thread, and run from the next tick on.
+ */
+final class TickScheduler {
+    private final AtomicInteger ids = new AtomicInteger();
+    // Tasks scheduled since the last tick, moved into tasks by the tick thread.
+    private final Queue<Task> scheduled = new ConcurrentLinkedQueue<>();
+    private final List<Task> tasks = new ArrayList<>();
+    private final ExecutorService asyncExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "LoadTest Async Task");
+        thread.setDaemon(true);
+        return (thread);
+    });
+    private long currentTick;
+
+    /**
+     * Schedules a task.
+     *
+     * @param period The ticks between runs, or a negative number to only run it once.
+     * @return The task.
+     */
+    Task schedule(Plugin owner, Runnable runnable, long delay, long period, boolean sync) {
+        Task task = new Task(ids.incrementAndGet(), owner, runnable, Math.max(1, delay), period, sync);
+        scheduled.add(task);
+        return (task);
+    }
+
+    /**
+     * Cancels a task by its id.
+     */
+    void cancel(int id) {
+        for (Task task : scheduled) {
+            if (task.id == id) {
+                task.cancelled = true;
+            }
+        }
+
+        // Only the tick thread touches the list; anyone else's cancellation is picked up through the flag.
+        synchronized (tasks) {
+            for (Task task : tasks) {
+                if (task.id == id) {
+                    task.cancelled = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs every task which is due this tick.
+     *
+     * @return How long the sync tasks took, in nanoseconds.
+     */
+    long tick() {
+        long syncNanos = 0;
+        Task task;
+
+        currentTick++;
+
+        synchronized (tasks) {
+            while ((task = scheduled.poll()) != null) {
+                task.nextRun = currentTick - 1 + task.delay;
+                tasks.add(task);
+            }
+        }
+
+        // Tasks scheduled while these run wait for the next tick, like on a real server.
+        List<Task> due = new ArrayList<>();
+
+        synchronized (tasks) {
+            for (Iterator<Task> iterator = tasks.iterator(); iterator.hasNext(); ) {
+                task = iterator.next();
+
+                if (task.cancelled) {
+                    iterator.remove();
+                } else if (task.nextRun <= currentTick) {
+                    due.add(task);
+
+                    if (task.period < 0) {
+                        iterator.remove();
+                    } else {
+                        task.nextRun = currentTick + Math.max(1, task.period);
+                    }
+                }
+            }
+        }
+
+        for (Task dueTask : due) {
+            if (!dueTask.sync) {
+                asyncExecutor.execute(dueTask.runnable);
+                continue;
+            }
+
+            long start = System.nanoTime();
+
+            try {
+                dueTask.runnable.run();
+            } catch (Throwable ex) {
+                ex.printStackTrace();
+            }
+
+            syncNanos += System.nanoTime() - start;
+        }
+
+        return (syncNanos);
+    }
+
+    /**
+     * @return The number of the current tick.
+     */
+    long getCurrentTick() {
+        return (currentTick);
+    }
+
+    /**
+     * A scheduled task.
+     */
+    static final class Task {
+        final int id;
+        final Plugin owner;
+        final Runnable runnable;
+        final long delay;
+        final long period;
+        final boolean sync;
+        volatile boolean cancelled;
+        // The tick it next runs in.
+        long nextRun;
+
+        private Task(int id, Plugin owner, Runnable runnable, long delay, long period, boolean sync) {
+            this.id = id;
+            this.owner = owner;
+            this.runnable = runnable;
+            this.delay = delay;
+            this.period = period;
+            this.sync = sync;
+        }
+    }
+}
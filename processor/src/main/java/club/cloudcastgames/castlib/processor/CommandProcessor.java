@@ -0,0 +1,282 @@
+package club.cloudcastgames.castlib.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates a command registry for every package containing @Command methods.
+ * <p>
+ * The registry builds each command's data up front and calls the command method directly,
+ * so CastLib can register a plugin's commands without scanning its jar or using reflection.
+ * Every generated registry is listed in META-INF/castlib/commands.list, which is how CastLib finds them.
+ * <p>
+ * Command methods are checked while compiling: they have to be static, accessible from their package,
+ * take a CommandSender (or Player) first and have a @Param annotation on every other parameter.
+ * <p>
+ * Annotation names are matched as strings, so this module doesn't depend on CastLib or Bukkit.
+ */
+@SupportedAnnotationTypes(CommandProcessor.COMMAND)
+public class CommandProcessor extends AbstractProcessor {
+    static final String COMMAND = "club.cloudcastgames.castlib.command.Command";
+    private static final String PARAM = "club.cloudcastgames.castlib.command.param.Param";
+    private static final String RANGE = "club.cloudcastgames.castlib.command.param.Range";
+    private static final String COMMAND_DATA = "club.cloudcastgames.castlib.command.CommandData";
+    private static final String PARAMETER_DATA = "club.cloudcastgames.castlib.command.param.ParameterData";
+    private static final String COMMAND_PROVIDER = "club.cloudcastgames.castlib.command.CommandProvider";
+    private static final String COMMAND_SENDER = "org.bukkit.command.CommandSender";
+    private static final String PLAYER = "org.bukkit.entity.Player";
+    private static final String REGISTRY = "CastLibCommandRegistry";
+    private static final String INDEX = "META-INF/castlib/commands.list";
+
+    // Registries written so far, by package.
+    private final Map<String, String> registries = new TreeMap<>();
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return (SourceVersion.latestSupported());
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return (false);
+        }
+
+        TypeElement commandType = processingEnv.getElementUtils().getTypeElement(COMMAND);
+
+        if (commandType == null) {
+            return (false);
+        }
+
+        Map<String, List<ExecutableElement>> methodsByPackage = new TreeMap<>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(roundEnv.getElementsAnnotatedWith(commandType))) {
+            if (validate(method)) {
+                String packageName = processingEnv.getElementUtils().getPackageOf(method).getQualifiedName().toString();
+                methodsByPackage.computeIfAbsent(packageName, key -> new ArrayList<>()).add(method);
+            }
+        }
+
+        for (Map.Entry<String, List<ExecutableElement>> entry : methodsByPackage.entrySet()) {
+            if (registries.containsKey(entry.getKey())) {
+                // A source file can only be written once, so we can't add to a registry from an earlier round.
+                error(entry.getValue().get(0), "@Command methods in package " + entry.getKey() + " were found in a later round than the rest of the package (are they generated?); move them to a different package.");
+                continue;
+            }
+
+            writeRegistry(entry.getKey(), entry.getValue());
+        }
+
+        return (false);
+    }
+
+    private boolean validate(ExecutableElement method) {
+        boolean valid = true;
+
+        if (!method.getModifiers().contains(Modifier.STATIC)) {
+            error(method, "@Command methods have to be static.");
+            valid = false;
+        }
+
+        for (Element element = method; element instanceof ExecutableElement || element instanceof TypeElement; element = element.getEnclosingElement()) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                error(method, "@Command methods (and the classes containing them) can't be private.");
+                valid = false;
+                break;
+            }
+        }
+
+        List<? extends VariableElement> parameters = method.getParameters();
+
+        if (parameters.isEmpty()) {
+            error(method, "@Command methods have to take a CommandSender (or Player) as their first parameter.");
+            return (false);
+        }
+
+        TypeElement commandSender = processingEnv.getElementUtils().getTypeElement(COMMAND_SENDER);
+
+        if (commandSender != null && !processingEnv.getTypeUtils().isAssignable(parameters.get(0).asType(), commandSender.asType())) {
+            error(parameters.get(0), "The first parameter of a @Command method has to be a CommandSender (or Player).");
+            valid = false;
+        }
+
+        for (VariableElement parameter : parameters.subList(1, parameters.size())) {
+            if (findAnnotation(parameter, PARAM) == null) {
+                error(parameter, "Parameter '" + parameter.getSimpleName() + "' of command method '" + method.getSimpleName() + "' has no @Param annotation.");
+                valid = false;
+            }
+        }
+
+        return (valid);
+    }
+
+    private void writeRegistry(String packageName, List<ExecutableElement> methods) {
+        String className = packageName.isEmpty() ? REGISTRY : packageName + "." + REGISTRY;
+        StringBuilder source = new StringBuilder();
+
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+
+        source.append("/**\n * Generated by the CastLib annotation processor. Do not edit.\n */\n");
+        source.append("public final class ").append(REGISTRY).append(" implements ").append(COMMAND_PROVIDER).append(" {\n\n");
+        source.append("    @Override\n    @SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        source.append("    public java.util.List<").append(COMMAND_DATA).append("> provideCommands() {\n");
+        source.append("        java.util.List<").append(COMMAND_DATA).append("> commands = new java.util.ArrayList<>();\n");
+
+        for (ExecutableElement method : methods) {
+            appendCommand(source, method);
+        }
+
+        source.append("\n        return (commands);\n    }\n}\n");
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(className, methods.toArray(new Element[0]));
+
+            try (Writer writer = file.openWriter()) {
+                writer.write(source.toString());
+            }
+
+            registries.put(packageName, className);
+        } catch (IOException e) {
+            error(methods.get(0), "Couldn't write " + className + ": " + e.getMessage());
+        }
+    }
+
+    private void appendCommand(StringBuilder source, ExecutableElement method) {
+        TypeElement owner = (TypeElement) method.getEnclosingElement();
+        List<? extends VariableElement> parameters = method.getParameters();
+        TypeMirror senderType = parameters.get(0).asType();
+        TypeElement player = processingEnv.getElementUtils().getTypeElement(PLAYER);
+        // Same rule as the reflective registration: console is allowed unless the method wants a Player.
+        boolean consoleAllowed = player == null || processingEnv.getTypeUtils().isAssignable(player.asType(), senderType);
+
+        source.append("\n        // ").append(owner.getQualifiedName()).append('#').append(method.getSimpleName()).append('\n');
+        source.append("        commands.add(new ").append(COMMAND_DATA).append("(\n");
+        source.append("                ").append(annotationInstance(findAnnotation(method, COMMAND), "                ")).append(",\n");
+        source.append("                java.util.Arrays.<").append(PARAMETER_DATA).append(">asList(");
+
+        for (int index = 1; index < parameters.size(); index++) {
+            VariableElement parameter = parameters.get(index);
+            AnnotationMirror range = findAnnotation(parameter, RANGE);
+
+            source.append(index > 1 ? ",\n" : "\n");
+            source.append("                        new ").append(PARAMETER_DATA).append("(")
+                    .append(annotationInstance(findAnnotation(parameter, PARAM), "                        "))
+                    .append(", ").append(range == null ? "null" : annotationInstance(range, "                        "))
+                    .append(", ").append(erasure(parameter.asType())).append(".class)");
+        }
+
+        source.append("),\n");
+        source.append("                (sender, arguments) -> ").append(owner.getQualifiedName()).append('.').append(method.getSimpleName())
+                .append("((").append(erasure(senderType)).append(") sender");
+
+        for (int index = 1; index < parameters.size(); index++) {
+            source.append(", (").append(erasure(parameters.get(index).asType())).append(") arguments[").append(index - 1).append(']');
+        }
+
+        source.append("),\n");
+        source.append("                ").append(processingEnv.getElementUtils().getConstantExpression(method.getSimpleName().toString())).append(",\n");
+        source.append("                ").append(consoleAllowed).append("));\n");
+    }
+
+    /**
+     * Writes an anonymous class implementing the annotation with the same values (defaults included),
+     * so the generated registry can use the same constructors as reflective registration.
+     */
+    private String annotationInstance(AnnotationMirror annotation, String indent) {
+        TypeElement type = (TypeElement) annotation.getAnnotationType().asElement();
+        Map<? extends ExecutableElement, ? extends AnnotationValue> values = processingEnv.getElementUtils().getElementValuesWithDefaults(annotation);
+        StringBuilder source = new StringBuilder();
+
+        source.append("new ").append(type.getQualifiedName()).append("() {\n");
+
+        for (ExecutableElement element : ElementFilter.methodsIn(type.getEnclosedElements())) {
+            source.append(indent).append("    public ").append(element.getReturnType()).append(' ').append(element.getSimpleName())
+                    .append("() { return (").append(literal(values.get(element), element.getReturnType())).append("); }\n");
+        }
+
+        source.append(indent).append("    public Class<? extends java.lang.annotation.Annotation> annotationType() { return (")
+                .append(type.getQualifiedName()).append(".class); }\n");
+        source.append(indent).append('}');
+
+        return (source.toString());
+    }
+
+    private String literal(AnnotationValue value, TypeMirror type) {
+        Object object = value.getValue();
+
+        if (object instanceof List) {
+            TypeMirror componentType = ((ArrayType) type).getComponentType();
+            StringBuilder source = new StringBuilder("new ").append(erasure(type)).append(" {");
+            boolean first = true;
+
+            for (Object element : (List<?>) object) {
+                source.append(first ? "" : ", ").append(literal((AnnotationValue) element, componentType));
+                first = false;
+            }
+
+            return (source.append('}').toString());
+        } else if (object instanceof TypeMirror) {
+            return (erasure((TypeMirror) object) + ".class");
+        } else if (object instanceof VariableElement) {
+            VariableElement constant = (VariableElement) object;
+            return (((TypeElement) constant.getEnclosingElement()).getQualifiedName() + "." + constant.getSimpleName());
+        } else if (object instanceof AnnotationMirror) {
+            return (annotationInstance((AnnotationMirror) object, ""));
+        }
+
+        return (processingEnv.getElementUtils().getConstantExpression(object));
+    }
+
+    private void writeIndex() {
+        if (registries.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", INDEX);
+
+            try (Writer writer = file.openWriter()) {
+                for (String className : registries.values()) {
+                    writer.write(className);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Couldn't write " + INDEX + ": " + e.getMessage());
+        }
+    }
+
+    private String erasure(TypeMirror type) {
+        return (processingEnv.getTypeUtils().erasure(type).toString());
+    }
+
+    private AnnotationMirror findAnnotation(Element element, String annotationName) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            if (((TypeElement) annotation.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotationName)) {
+                return (annotation);
+            }
+        }
+
+        return (null);
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
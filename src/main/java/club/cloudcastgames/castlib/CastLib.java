@@ -1,10 +1,23 @@
 package club.cloudcastgames.castlib;
 
+import club.cloudcastgames.castlib.command.AsyncCommandExecutor;
 import club.cloudcastgames.castlib.command.CastCommandHandler;
+import club.cloudcastgames.castlib.command.CommandJournal;
+import club.cloudcastgames.castlib.command.CommandMapBridge;
+import club.cloudcastgames.castlib.command.CommandQueue;
+import club.cloudcastgames.castlib.command.CommandWatchdog;
+import club.cloudcastgames.castlib.command.PermissionCache;
+import club.cloudcastgames.castlib.command.stats.CommandMetrics;
+import club.cloudcastgames.castlib.player.PlayerNameIndex;
+import club.cloudcastgames.castlib.player.UUIDCache;
+import club.cloudcastgames.castlib.util.ClassUtils;
 import lombok.Getter;
 import org.bukkit.Bukkit;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
 
+import java.io.File;
 import java.util.Random;
 
 public final class CastLib extends JavaPlugin {
@@ -12,18 +25,44 @@ public final class CastLib extends JavaPlugin {
     @Getter private static CastLib instance;
     public static final Random RANDOM = new Random();
 
+    public CastLib() {
+    }
+
+    /**
+     * Creates CastLib outside of a server's plugin loader, such as in the benchmarks.
+     * Servers always use the no-argument constructor.
+     */
+    public CastLib(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
+
     @Override
     public void onEnable() {
         long start = System.currentTimeMillis();
         instance = this;
+        saveDefaultConfig();
 
+        ClassUtils.setIndexDirectory(new File(getDataFolder(), "scan-cache"));
+        PlayerNameIndex.init();
+        UUIDCache.init();
+        AsyncCommandExecutor.init();
+        PermissionCache.init();
         CastCommandHandler.init();
+        CommandQueue.init();
+        CommandJournal.init();
+        CommandWatchdog.init();
+        CommandMetrics.init();
 
         Bukkit.getConsoleSender().sendMessage("[CastLib] loaded in " + (System.currentTimeMillis() - start) + "ms. (By CloudCast Development)");
     }
 
     @Override
     public void onDisable() {
-        // Plugin shutdown logic
+        CommandQueue.shutdown();
+        CommandMapBridge.shutdown();
+        CommandJournal.shutdown();
+        CommandWatchdog.shutdown();
+        AsyncCommandExecutor.shutdown();
+        UUIDCache.shutdown();
     }
 }
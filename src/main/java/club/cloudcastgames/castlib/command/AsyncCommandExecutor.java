@@ -0,0 +1,240 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.stats.CommandOutcome;
+import club.cloudcastgames.castlib.command.stats.CommandPhase;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Player;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs async commands in bounded pools, configured under "async.pools" in CastLib's config.
+ * <p>
+ * A command is rejected (with a message to its sender) when its pool's threads and queue are all taken,
+ * instead of starting yet another thread. Commands can also be limited to one run per sender at a time
+ * ({@link Command#exclusive()}), and are cancelled once their deadline ({@link Command#timeout()}, or the pool's) passes:
+ * if they're still queued they never run, and if they're running their thread is interrupted.
+ * Either way the run counts as timed out, and nothing it does afterwards is counted or reported to its sender.
+ * An interrupted command only stops once its code notices, and an exclusive command stays exclusive until then.
+ */
+public final class AsyncCommandExecutor {
+    public static final String DEFAULT_POOL = "default";
+
+    // Invocation states.
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int FINISHED = 2;
+
+    private static Map<String, AsyncPool> pools = ImmutableMap.of();
+    // Exclusive commands being run, by command and sender. The value identifies the invocation.
+    private static final ConcurrentMap<String, Object> running = new ConcurrentHashMap<>();
+    private static ScheduledThreadPoolExecutor timeouts;
+    private static boolean initiated = false;
+
+    private AsyncCommandExecutor() {}
+
+    /**
+     * Creates the pools configured in CastLib's config.
+     * This can only be called once, and is called automatically when CastLib enables.
+     */
+    public static void init() {
+        Preconditions.checkState(!initiated);
+        initiated = true;
+
+        ConfigurationSection section = CastLib.getInstance().getConfig().getConfigurationSection("async.pools");
+        Map<String, AsyncPool> configured = new HashMap<>();
+
+        if (section != null) {
+            for (String name : section.getKeys(false)) {
+                ConfigurationSection pool = section.getConfigurationSection(name);
+
+                if (pool != null) {
+                    configured.put(name, new AsyncPool(name, Math.max(1, pool.getInt("threads", 4)), pool.getInt("queue-size", 100), pool.getLong("timeout", 0L)));
+                }
+            }
+        }
+
+        if (!configured.containsKey(DEFAULT_POOL)) {
+            configured.put(DEFAULT_POOL, new AsyncPool(DEFAULT_POOL, 4, 100, 30_000L));
+        }
+
+        pools = ImmutableMap.copyOf(configured);
+        timeouts = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setNameFormat("CastLib Async Command Timeouts").setDaemon(true).build());
+        timeouts.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Stops every pool, giving running commands a few seconds to finish.
+     */
+    public static void shutdown() {
+        for (AsyncPool pool : pools.values()) {
+            pool.getExecutor().shutdown();
+        }
+
+        for (AsyncPool pool : pools.values()) {
+            try {
+                pool.getExecutor().awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        if (timeouts != null) {
+            timeouts.shutdownNow();
+        }
+    }
+
+    /**
+     * @return Every pool, by name.
+     */
+    public static Map<String, AsyncPool> getPools() {
+        return (pools);
+    }
+
+    /**
+     * Gets a pool by name.
+     *
+     * @param name The name of the pool.
+     * @return The pool, or the default pool if there's no pool with that name.
+     */
+    public static AsyncPool getPool(String name) {
+        AsyncPool pool = pools.get(name);
+        return (pool == null ? pools.get(DEFAULT_POOL) : pool);
+    }
+
+    /**
+     * Runs a command in its pool. This must be called on the main thread:
+     * the parameters which need it are transformed right away, and the rest run in the pool.
+     *
+     * @param command The command to run.
+     * @param sender  The CommandSender executing the command.
+     * @param args    The command's arguments.
+     * @return If the command was accepted. If it wasn't, the sender has been told why
+     *         (or the command is waiting for a parameter's lookup, and is submitted again once it's done).
+     */
+    public static boolean submit(CommandData command, CommandSender sender, CommandLine args) {
+        if (CommandContext.current() == null) {
+            // Submitted outside of a dispatch; the run still needs a context, which is how a timeout ends it.
+            CommandContext context = new CommandContext(sender, args, command.getName(), command, args, System.nanoTime());
+            return (context.call(() -> submit(command, sender, args)));
+        }
+
+        long transformStart = System.nanoTime();
+        Object[] arguments = command.transform(sender, args, true);
+        return (arguments != null && submit(command, sender, args, arguments, System.nanoTime() - transformStart));
+    }
+
+    /**
+     * Runs the rest of a command in its pool, once the parameters which need the main thread have been transformed.
+     *
+     * @param arguments      The arguments from {@link CommandData#transform(CommandSender, CommandLine, boolean)}.
+     * @param transformNanos How long transforming them took, recorded with the rest of the transform (or when the run ends before it).
+     */
+    static boolean submit(CommandData command, CommandSender sender, CommandLine args, Object[] arguments, long transformNanos) {
+        AsyncPool pool = getPool(command.getAsyncPool());
+        String exclusiveKey = command.isExclusive() ? command.getName() + ' ' + senderId(sender) : null;
+        Object invocation = new Object();
+        CommandContext context = CommandContext.current();
+
+        if (exclusiveKey != null && running.putIfAbsent(exclusiveKey, invocation) != null) {
+            sender.sendMessage(ChatColor.RED + "You're already running this command; please wait for it to finish.");
+            command.record(CommandPhase.TRANSFORM, transformNanos, context);
+            command.count(CommandOutcome.REJECTED, context);
+            return (false);
+        }
+
+        long submitted = System.nanoTime();
+        long timeout = command.getTimeout() > 0 ? command.getTimeout() : pool.getTimeout();
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        AtomicReference<Future<?>> task = new AtomicReference<>();
+        AtomicReference<ScheduledFuture<?>> deadline = new AtomicReference<>();
+
+        if (timeout > 0) {
+            deadline.set(timeouts.schedule(() -> {
+                if (state.compareAndSet(QUEUED, FINISHED)) {
+                    // Never started, so just take it out of the queue.
+                    Future<?> queued = task.get();
+
+                    if (queued != null) {
+                        pool.getExecutor().remove((Runnable) queued);
+                    }
+
+                    release(exclusiveKey, invocation);
+                    command.record(CommandPhase.TRANSFORM, transformNanos, context);
+                    command.count(CommandOutcome.TIMED_OUT, context);
+                } else {
+                    Future<?> current = task.get();
+
+                    // The outcome is claimed before interrupting, so the run can't also count as finished (or failed).
+                    if (state.get() != RUNNING || current == null || !command.count(CommandOutcome.TIMED_OUT, context)) {
+                        return;
+                    }
+
+                    // The thread keeps the exclusive slot until it actually stops.
+                    current.cancel(true);
+                }
+
+                pool.countTimedOut();
+                sender.sendMessage(ChatColor.RED + "Your command took too long and was cancelled.");
+            }, timeout, TimeUnit.MILLISECONDS));
+        }
+
+        try {
+            task.set(pool.getExecutor().submit(() -> {
+                if (!state.compareAndSet(QUEUED, RUNNING)) {
+                    return;
+                }
+
+                long waited = System.nanoTime() - submitted;
+                pool.getQueueWait().record(waited);
+                command.record(CommandPhase.QUEUE_WAIT, waited, context);
+
+                try {
+                    CommandContext.run(context, () -> command.complete(sender, args, arguments, transformNanos));
+                } finally {
+                    state.set(FINISHED);
+                    release(exclusiveKey, invocation);
+
+                    if (deadline.get() != null) {
+                        deadline.get().cancel(false);
+                    }
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            state.set(FINISHED);
+            release(exclusiveKey, invocation);
+
+            if (deadline.get() != null) {
+                deadline.get().cancel(false);
+            }
+
+            pool.countRejected();
+            command.record(CommandPhase.TRANSFORM, transformNanos, context);
+            command.count(CommandOutcome.REJECTED, context);
+            sender.sendMessage(ChatColor.RED + "The server is too busy to run that right now; please try again in a moment.");
+            return (false);
+        }
+
+        return (true);
+    }
+
+    private static void release(String exclusiveKey, Object invocation) {
+        if (exclusiveKey != null) {
+            running.remove(exclusiveKey, invocation);
+        }
+    }
+
+    private static String senderId(CommandSender sender) {
+        return (sender instanceof Player ? ((Player) sender).getUniqueId().toString() : sender.getName());
+    }
+}
@@ -0,0 +1,67 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.command.stats.LatencyHistogram;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded thread pool async commands run in (see {@link AsyncCommandExecutor}).
+ * Once every thread is busy and the queue is full, new commands are rejected rather than queued.
+ */
+public final class AsyncPool {
+    @Getter private final String name;
+    @Getter private final long timeout;
+    @Getter private final ThreadPoolExecutor executor;
+    @Getter private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+
+    AsyncPool(String name, int threads, int queueSize, long timeout) {
+        this.name = name;
+        this.timeout = timeout;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                new ThreadFactoryBuilder().setNameFormat("CastLib Async Command (" + name + ") #%d").setDaemon(true).build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return The number of commands waiting for a thread.
+     */
+    public int getQueueDepth() {
+        return (executor.getQueue().size());
+    }
+
+    /**
+     * @return The number of threads running a command right now.
+     */
+    public int getActiveThreads() {
+        return (executor.getActiveCount());
+    }
+
+    /**
+     * @return How many commands were rejected because the pool was full.
+     */
+    public long getRejected() {
+        return (rejected.get());
+    }
+
+    /**
+     * @return How many commands were cancelled because their deadline passed.
+     */
+    public long getTimedOut() {
+        return (timedOut.get());
+    }
+
+    void countRejected() {
+        rejected.incrementAndGet();
+    }
+
+    void countTimedOut() {
+        timedOut.incrementAndGet();
+    }
+}
@@ -1,13 +1,19 @@
 package club.cloudcastgames.castlib.command;
 
 import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.param.AsyncParameterType;
+import club.cloudcastgames.castlib.command.param.CompletionRanker;
+import club.cloudcastgames.castlib.command.param.CompletionSink;
 import club.cloudcastgames.castlib.command.param.Param;
 import club.cloudcastgames.castlib.command.param.ParameterData;
 import club.cloudcastgames.castlib.command.param.ParameterType;
+import club.cloudcastgames.castlib.command.param.Range;
 import club.cloudcastgames.castlib.command.param.defaults.*;
+import club.cloudcastgames.castlib.command.stats.CommandOutcome;
+import club.cloudcastgames.castlib.command.stats.CommandPhase;
+import club.cloudcastgames.castlib.command.stats.StatsCommand;
 import club.cloudcastgames.castlib.util.ClassUtils;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.ImmutableSet;
 import lombok.Getter;
 import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
@@ -19,22 +25,38 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
+import org.bukkit.event.server.PluginDisableEvent;
 import org.bukkit.event.server.ServerCommandEvent;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitRunnable;
+import org.bukkit.plugin.java.JavaPlugin;
 
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class CastCommandHandler implements Listener {
-    @Getter private static List<CommandData> commands = new ArrayList<>();
+    @Getter private static final CommandRegistry registry = new CommandRegistry();
     private static Map<Class<?>, ParameterType> parameterTypes = new HashMap<>();
+    // The numeric types which also accept amounts like "10k", for parameters which opt in (see Range#amounts()).
+    private static Map<Class<?>, ParameterType> amountParameterTypes = new HashMap<>();
+    private static SimpleCommandMap commandMap;
+    // Whether commands are intercepted from chat and console events, instead of being registered in the command map.
+    @Getter private static boolean preprocessMode = false;
+    // The most tab completions offered at once.
+    @Getter private static int completionLimit = 100;
     private static boolean initiated = false;
 
     private CastCommandHandler() {}
@@ -51,35 +73,23 @@ public class CastCommandHandler implements Listener {
 
         CastLib.getInstance().getServer().getPluginManager().registerEvents(new CastCommandHandler(), CastLib.getInstance());
 
-        new BukkitRunnable() {
-            public void run() {
-                try {
-                    Field commandMapField = CastLib.getInstance().getServer().getClass().getDeclaredField("commandMap");
-                    commandMapField.setAccessible(true);
+        preprocessMode = "preprocess".equalsIgnoreCase(CastLib.getInstance().getConfig().getString("commands.mode", "direct"));
+        completionLimit = Math.max(1, CastLib.getInstance().getConfig().getInt("completion.limit", 100));
 
-                    Object oldCommandMap = commandMapField.get(CastLib.getInstance().getServer());
-                    CastCommandMap newCommandMap = new CastCommandMap(CastLib.getInstance().getServer());
+        try {
+            SimpleCommandMap serverCommandMap = CommandMapBridge.getServerCommandMap(CastLib.getInstance().getServer());
 
-                    // Start copying the knownCommands field over
-                    // (so any commands registered before we hook in are kept)
-                    Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
-                    knownCommandsField.setAccessible(true);
-
-                    // The knownCommands field is final,
-                    // so to be able to set it in the new command map we have to remove it.
-                    Field modifiersField = Field.class.getDeclaredField("modifiers");
-                    modifiersField.setAccessible(true);
-                    modifiersField.setInt(knownCommandsField, knownCommandsField.getModifiers() & ~Modifier.FINAL);
-
-                    knownCommandsField.set(newCommandMap, knownCommandsField.get(oldCommandMap));
-                    // End copying the knownCommands field over
-
-                    commandMapField.set(CastLib.getInstance().getServer(), newCommandMap);
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                }
+            if (preprocessMode) {
+                commandMap = swapCommandMap(serverCommandMap);
+            } else {
+                commandMap = serverCommandMap;
+                CommandMapBridge.init(serverCommandMap);
             }
-        }.runTaskLater(CastLib.getInstance(), 5L);
+        } catch (Throwable ex) {
+            CastLib.getInstance().getLogger().warning("Couldn't hook into the server's command map; commands will be intercepted from chat instead, without tab completion.");
+            ex.printStackTrace();
+            preprocessMode = true;
+        }
 
         // Register our default parameter types.
         // boolean.class is the same as Boolean.TYPE,
@@ -88,20 +98,102 @@ public class CastCommandHandler implements Listener {
         registerParameterType(float.class, new FloatParameterType());
         registerParameterType(double.class, new DoubleParameterType());
         registerParameterType(int.class, new IntegerParameterType());
+        registerParameterType(long.class, new LongParameterType());
+        registerParameterType(Duration.class, new DurationParameterType());
         registerParameterType(OfflinePlayer.class, new OfflinePlayerParameterType());
         registerParameterType(Player.class, new PlayerParameterType());
         registerParameterType(World.class, new WorldParameterType());
+
+        amountParameterTypes.put(float.class, new FloatParameterType(true));
+        amountParameterTypes.put(double.class, new DoubleParameterType(true));
+        amountParameterTypes.put(int.class, new IntegerParameterType(true));
+        amountParameterTypes.put(long.class, new LongParameterType(true));
+
+        // Register our own commands.
+        registry.register(CastLib.getInstance(), createCommands(StatsCommand.class));
+    }
+
+    /**
+     * Replaces the server's command map with a {@link CastCommandMap}, which shares its commands,
+     * so CastLib commands can be tab completed while they're intercepted from chat.
+     *
+     * @param serverCommandMap The server's current command map.
+     * @return The new command map.
+     */
+    private static CastCommandMap swapCommandMap(SimpleCommandMap serverCommandMap) throws Throwable {
+        CastCommandMap newCommandMap = new CastCommandMap(CastLib.getInstance().getServer());
+
+        // Both maps use the same knownCommands, so any commands registered before or after we hook in are kept.
+        // It's final, but final instance fields can still be set reflectively once they're accessible.
+        Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
+        knownCommandsField.setAccessible(true);
+        knownCommandsField.set(newCommandMap, CommandMapBridge.getKnownCommands(serverCommandMap));
+
+        Field commandMapField = CastLib.getInstance().getServer().getClass().getDeclaredField("commandMap");
+        commandMapField.setAccessible(true);
+        commandMapField.set(CastLib.getInstance().getServer(), newCommandMap);
+
+        return (newCommandMap);
     }
 
     /**
      * Loads all commands from the given package into the command handler.
      *
-     * @param plugin      The plugin responsible for these commands. This is here
-     *                    because the .getClassesInPackage method requires it (for no real reason)
+     * @param plugin      The plugin responsible for these commands. Its jar is the one searched.
      * @param packageName The package to load commands from. Example: "net.frozenorb.mshared.commands"
      */
     public static void loadCommandsFromPackage(Plugin plugin, String packageName) {
-        ClassUtils.getClassesInPackage(plugin, packageName).forEach(CastCommandHandler::registerClass);
+        // Plugins built with the annotation processor list their commands at compile time,
+        // so there's no need to open the jar and reflect over every class.
+        if (!loadGeneratedCommands(plugin, packageName)) {
+            List<CommandData> commands = new ArrayList<>();
+
+            for (Class<?> commandClass : ClassUtils.getAnnotatedClassesInPackage(plugin.getClass(), packageName, Command.class)) {
+                commands.addAll(createCommands(commandClass));
+            }
+
+            registry.register(plugin, commands);
+        }
+    }
+
+    /**
+     * Loads the commands from the registries the CastLib annotation processor generated for a plugin.
+     *
+     * @param plugin      The plugin to load generated registries from.
+     * @param packageName The package to load commands from (subpackages included).
+     * @return If the plugin has generated registries. If it does, they include every command in the plugin.
+     */
+    protected static boolean loadGeneratedCommands(Plugin plugin, String packageName) {
+        InputStream index = plugin.getResource(CommandProvider.INDEX);
+
+        if (index == null) {
+            return (false);
+        }
+
+        List<CommandData> commands = new ArrayList<>();
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(index, StandardCharsets.UTF_8))) {
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                String className = line.trim();
+                int packageEnd = className.lastIndexOf('.');
+                String registryPackage = packageEnd == -1 ? "" : className.substring(0, packageEnd);
+
+                if (className.isEmpty() || !(registryPackage.equals(packageName) || registryPackage.startsWith(packageName + "."))) {
+                    continue;
+                }
+
+                CommandProvider provider = (CommandProvider) Class.forName(className, true, plugin.getClass().getClassLoader()).newInstance();
+                commands.addAll(provider.provideCommands());
+            }
+        } catch (Exception e) {
+            throw (new RuntimeException("Unexpected exception loading the generated commands of " + plugin.getName(), e));
+        }
+
+        registry.register(plugin, commands);
+
+        return (true);
     }
 
     /**
@@ -123,17 +215,37 @@ public class CastCommandHandler implements Listener {
         parameterTypes.put(transforms, parameterType);
     }
 
+    /**
+     * Unregisters every command a plugin registered.
+     * This is done automatically when a plugin disables.
+     *
+     * @param plugin The plugin whose commands to unregister.
+     */
+    public static void unregisterAll(Plugin plugin) {
+        registry.unregister(plugin);
+    }
+
+    /**
+     * @return Every registered command, longest name first. This is an immutable snapshot.
+     */
+    public static List<CommandData> getCommands() {
+        return (registry.getCommands());
+    }
+
+    /**
+     * @return The trie of every registered command's aliases. This is an immutable snapshot.
+     */
+    public static CommandTrie getCommandTrie() {
+        return (registry.getTrie());
+    }
+
     /**
      * Registers a single class with the command handler.
      *
      * @param registeredClass The class to scan/register.
      */
     protected static void registerClass(Class<?> registeredClass) {
-        for (Method method : registeredClass.getMethods()) {
-            if (method.getAnnotation(Command.class) != null) {
-                registerMethod(method);
-            }
-        }
+        registry.register(getOwner(registeredClass), createCommands(registeredClass));
     }
 
     /**
@@ -142,65 +254,132 @@ public class CastCommandHandler implements Listener {
      * @param method The method to register (if applicable)
      */
     protected static void registerMethod(Method method) {
+        CommandData commandData = createCommand(method);
+
+        if (commandData != null) {
+            registry.register(getOwner(method.getDeclaringClass()), Collections.singletonList(commandData));
+        }
+    }
+
+    /**
+     * Registers a single command with the command handler.
+     *
+     * @param commandData The command to register
+     */
+    protected static void registerCommand(CommandData commandData) {
+        registry.register(null, Collections.singletonList(commandData));
+    }
+
+    private static List<CommandData> createCommands(Class<?> commandClass) {
+        List<CommandData> commands = new ArrayList<>();
+
+        for (Method method : commandClass.getMethods()) {
+            if (method.getAnnotation(Command.class) != null) {
+                CommandData commandData = createCommand(method);
+
+                if (commandData != null) {
+                    commands.add(commandData);
+                }
+            }
+        }
+
+        return (commands);
+    }
+
+    private static CommandData createCommand(Method method) {
         Command commandAnnotation = method.getAnnotation(Command.class);
         List<ParameterData> parameterData = new ArrayList<>();
 
+        if (!Modifier.isStatic(method.getModifiers())) {
+            CastLib.getInstance().getLogger().warning("Method '" + method.getName() + "' has a @Command annotation but isn't static.");
+            return (null);
+        }
+
         // Offset of 1 here for the sender parameter.
         for (int parameterIndex = 1; parameterIndex < method.getParameterTypes().length; parameterIndex++) {
             Param parameterAnnotation = null;
+            Range rangeAnnotation = null;
 
             for (Annotation annotation : method.getParameterAnnotations()[parameterIndex]) {
                 if (annotation instanceof Param) {
                     parameterAnnotation = (Param) annotation;
-                    break;
+                } else if (annotation instanceof Range) {
+                    rangeAnnotation = (Range) annotation;
                 }
             }
 
             if (parameterAnnotation != null) {
-                parameterData.add(new ParameterData(parameterAnnotation, method.getParameterTypes()[parameterIndex]));
+                parameterData.add(new ParameterData(parameterAnnotation, rangeAnnotation, method.getParameterTypes()[parameterIndex]));
             } else {
                 CastLib.getInstance().getLogger().warning("Method '" + method.getName() + "' has a parameter without a @Parameter annotation.");
-                return;
+                return (null);
             }
         }
-        CommandData commandData = new CommandData(commandAnnotation, parameterData, method, method.getParameterTypes()[0].isAssignableFrom(Player.class));
-
 
-        commands.add(commandData);
+        return (new CommandData(commandAnnotation, parameterData, method, method.getParameterTypes()[0].isAssignableFrom(Player.class)));
+    }
 
-        // We sort here so to ensure that our commands are matched properly.
-        // The way we process commands (see onCommandPreProcess) requires the commands list
-        // be sorted by the length of the commands.
-        // It's easier (and more efficient) to do that sort here than on command.
-        commands.sort((o1, o2) -> (o2.getName().length() - o1.getName().length()));
+    private static Plugin getOwner(Class<?> commandClass) {
+        try {
+            return (JavaPlugin.getProvidingPlugin(commandClass));
+        } catch (IllegalArgumentException ex) {
+            // Not loaded by a plugin, so it's never unregistered.
+            return (null);
+        }
     }
 
     /**
-     * @return the full command line input of a player before running or tab completing a qLib command
+     * @return the full command line input of a player while running or tab completing a CastLib command
+     * @deprecated Use {@link CommandContext#current()}, which also works for the console and has the alias and arguments split out.
      */
+    @Deprecated
     public static String[] getParameters(Player player) {
-        return CastCommandMap.parameters.get(player.getUniqueId());
+        CommandContext context = CommandContext.current();
+        return (context == null || context.getSender() != player ? null : context.getLine().toArray());
     }
 
     @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     // Allow command cancellation; this was an issue on KitPvP
     public void onCommandPreProcess(PlayerCommandPreprocessEvent event) {
-        // The substring is to chop off the '/' that Bukkit gives us here.
-        String command = event.getMessage().substring(1);
+        // In direct mode, the server's command map dispatches our commands (see CommandMapBridge).
+        if (!preprocessMode) {
+            return;
+        }
 
-        CastCommandMap.parameters.put(event.getPlayer().getUniqueId(), command.split(" "));
+        // The substring is to chop off the '/' that Bukkit gives us here.
+        long start = System.nanoTime();
+        CommandLine line = CommandLine.parse(event.getMessage().substring(1));
 
-        if (evalCommand(event.getPlayer(), command) != null) {
+        if (evalCommand(event.getPlayer(), line) != null || sendGroupHelp(event.getPlayer(), line) || sendSuggestion(event.getPlayer(), line)) {
             event.setCancelled(true);
         }
+
+        // Players' commands go ahead of queued ones, so the queue gets less time in the next tick.
+        CommandQueue.recordForeground(System.nanoTime() - start);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPluginDisable(PluginDisableEvent event) {
+        unregisterAll(event.getPlugin());
     }
 
     @EventHandler
     public void onConsoleCommand(ServerCommandEvent event) {
-        if (evalCommand(event.getSender(), event.getCommand()) != null) {
+        if (CommandQueue.isConsoleMode()) {
+            CommandQueue.submitConsole(event.getSender(), event.getCommand());
             event.setCancelled(true);
+            return;
         }
 
+        if (!preprocessMode) {
+            return;
+        }
+
+        CommandLine line = CommandLine.parse(event.getCommand());
+
+        if (evalCommand(event.getSender(), line) != null || sendGroupHelp(event.getSender(), line) || sendSuggestion(event.getSender(), line)) {
+            event.setCancelled(true);
+        }
     }
 
     /**
@@ -212,70 +391,154 @@ public class CastCommandHandler implements Listener {
      * @return The Command executed
      */
     public static CommandData evalCommand(final CommandSender sender, String command) {
-        String[] args = new String[]{};
-        CommandData found = null;
-
-        CommandLoop:
-        for (CommandData commandData : commands) {
-            for (String alias : commandData.getNames()) {
-                String messageString = command.toLowerCase() + " "; // Add a space.
-                String aliasString = alias.toLowerCase() + " "; // Add a space.
-                // The space is added so '/pluginslol' doesn't match '/plugins'
-
-                if (messageString.startsWith(aliasString)) {
-                    found = commandData;
-
-                    if (messageString.length() > aliasString.length()) {
-                        if (found.getParameters().size() == 0) {
-                            continue;
-                        }
-                    }
-
-                    // If there's 'space' after the command, parse args.
-                    // The +1 is there to account for a space after the command if there's parameters
-                    if (command.length() > alias.length() + 1) {
-                        // See above as to... why this works.
-                        args = (command.substring(alias.length() + 1)).split(" ");
-                    }
-
-                    // We break to the command loop as we have 2 for loops here.
-                    break CommandLoop;
-                }
-            }
-        }
+        return (evalCommand(sender, CommandLine.parse(command)));
+    }
 
-        if (found == null) {
+    /**
+     * Process an already tokenized command (permission checks, argument validation, etc.)
+     *
+     * @param sender  The CommandSender executing this command.
+     *                It should be noted that any non-player sender is treated with full permissions.
+     * @param line    The tokenized command line (without a prepended '/')
+     * @return The Command executed
+     */
+    public static CommandData evalCommand(final CommandSender sender, CommandLine line) {
+        CommandContext context = dispatch(sender, line);
+        return (context == null ? null : context.getCommand());
+    }
+
+    /**
+     * Processes an already tokenized command, the same as {@link #evalCommand(CommandSender, CommandLine)}.
+     *
+     * @param sender The CommandSender executing this command.
+     * @param line   The tokenized command line (without a prepended '/')
+     * @return The context of the run, whose outcome is set once the command has finished, or null if no command matched.
+     */
+    static CommandContext dispatch(final CommandSender sender, CommandLine line) {
+        long start = System.nanoTime();
+        CommandTrie.Match match = registry.getTrie().match(line);
+
+        if (match == null) {
             return (null);
         }
 
+        CommandData found = match.getCommand();
+        // Everything after the alias is the command's arguments.
+        CommandLine args = line.shift(match.getTokens());
+        // The alias exactly as it was typed, e.g. "team create".
+        String alias = line.getLine().substring(line.start(0), line.end(match.getTokens() - 1));
+        CommandContext context = new CommandContext(sender, line, alias, found, args, start);
+        long matched = System.nanoTime();
+
+        found.record(CommandPhase.DISPATCH, matched - start, context);
+
         if (!(sender instanceof Player) && !found.isConsoleAllowed()) {
             sender.sendMessage(ChatColor.RED + "This command does not support execution from the console.");
-            return (found);
+            found.count(CommandOutcome.DENIED, context);
+            return (context);
         }
 
-        if (!found.canAccess(sender) && !(found.isHidden())) {
+        boolean canAccess = found.canAccess(sender);
+        found.record(CommandPhase.PERMISSION, System.nanoTime() - matched, context);
+
+        if (!canAccess && !(found.isHidden())) {
             sender.sendMessage(ChatColor.RED + "No permission.");
-            return (found);
-        } else if (found.isHidden() && !found.canAccess(sender)) {
+            found.count(CommandOutcome.DENIED, context);
+            return (context);
+        } else if (found.isHidden() && !canAccess) {
             sender.sendMessage("Unknown command. Type \"/help\" for help.");
         }
 
-        if (found.isAsync()) {
-            final CommandData foundClone = found;
-            final String[] argsClone = args;
+        // Limits are checked before any parameters are transformed, so spam is rejected as cheaply as possible.
+        if (found.getRateLimiter() != null) {
+            long wait = found.getRateLimiter().tryAcquire(sender);
+
+            if (wait > 0) {
+                sender.sendMessage(ChatColor.RED + "You're using this command too quickly; please wait " + String.format(Locale.ROOT, "%.1f", wait / 1e9) + " seconds.");
+                found.count(CommandOutcome.RATE_LIMITED, context);
+                return (context);
+            }
+        }
 
-            new BukkitRunnable() {
+        // Async commands carry the context over to their pool thread.
+        context.run(() -> found.run(sender, args));
 
-                public void run() {
-                    foundClone.execute(sender, argsClone);
-                }
+        return (context);
+    }
+
+    /**
+     * Shows the help of a group of subcommands which isn't a command itself,
+     * e.g. "/team" (or "/team foo") when only "team create" and "team invite" are registered.
+     *
+     * @param sender The CommandSender who typed the line.
+     * @param line   The tokenized command line (without a prepended '/'), which no command matched.
+     * @return If help was shown.
+     */
+    protected static boolean sendGroupHelp(CommandSender sender, CommandLine line) {
+        CommandNode group = registry.getTrie().getRoot().descend(line);
+
+        // Labels which are commands outside of CastLib are left to them.
+        if (group.getParent() == null || isForeignLabel(line.get(0)) || !group.canReach(sender)) {
+            return (false);
+        }
+
+        List<String> help = group.getHelp(sender);
+
+        if (help.isEmpty()) {
+            return (false);
+        }
+
+        int depth = 0;
+
+        for (CommandNode node = group; node.getParent() != null; node = node.getParent()) {
+            depth++;
+        }
+
+        // Something was typed after the group, so it's probably a misspelled subcommand.
+        String suggestion = line.size() > depth ? registry.suggest(sender, line) : null;
+
+        if (suggestion != null) {
+            sender.sendMessage(ChatColor.RED + "Unknown subcommand. Did you mean /" + suggestion + "?");
+        }
+
+        sender.sendMessage(ChatColor.RED + "Usage:");
 
-            }.runTaskAsynchronously(CastLib.getInstance());
-        } else {
-            found.execute(sender, args);
+        for (String helpLine : help) {
+            sender.sendMessage(helpLine);
         }
 
-        return (found);
+        return (true);
+    }
+
+    /**
+     * Suggests the closest command to a line which no command matched, instead of "Unknown command".
+     *
+     * @param sender The CommandSender who typed the line.
+     * @param line   The tokenized command line (without a prepended '/')
+     * @return If a suggestion was shown.
+     */
+    protected static boolean sendSuggestion(CommandSender sender, CommandLine line) {
+        // Labels which are commands outside of CastLib are left to them.
+        if (line.isEmpty() || isForeignLabel(line.get(0))) {
+            return (false);
+        }
+
+        String suggestion = registry.suggest(sender, line);
+
+        if (suggestion == null) {
+            return (false);
+        }
+
+        sender.sendMessage("Unknown command. Did you mean /" + suggestion + "?");
+        return (true);
+    }
+
+    /**
+     * @return If a label belongs to a command outside of CastLib.
+     */
+    private static boolean isForeignLabel(String label) {
+        org.bukkit.command.Command command = commandMap == null ? null : commandMap.getCommand(label);
+        return (command != null && !CommandMapBridge.isBridged(command));
     }
 
     /**
@@ -287,6 +550,16 @@ public class CastCommandHandler implements Listener {
      * @return The Object that we've transformed the parameter to.
      */
     protected static Object transformParameter(CommandSender sender, String parameter, Class<?> transformTo) {
+        return (transformParameter(sender, parameter, transformTo, false));
+    }
+
+    /**
+     * Transforms a parameter, accepting amounts like "10k" if it's numeric and they're asked for.
+     *
+     * @param amounts If amounts are accepted (see {@link Range#amounts()}).
+     * @see #transformParameter(CommandSender, String, Class)
+     */
+    protected static Object transformParameter(CommandSender sender, String parameter, Class<?> transformTo, boolean amounts) {
         // Special-case Strings as they never need transforming.
         if (transformTo.equals(String.class)) {
             return (parameter);
@@ -294,23 +567,67 @@ public class CastCommandHandler implements Listener {
 
         // This will throw a NullPointerException if there's no registered
         // parameter type, but that's fine -- as that's what we'd do anyway.
-        return (parameterTypes.get(transformTo).transform(sender, parameter));
+        ParameterType<?> parameterType = amounts && amountParameterTypes.containsKey(transformTo) ? amountParameterTypes.get(transformTo) : parameterTypes.get(transformTo);
+        CommandContext context = CommandContext.current();
+
+        if (context != null && context.getSender() == sender) {
+            return (parameterType.transform(context, parameter));
+        }
+
+        return (parameterType.transform(sender, parameter));
+    }
+
+    /**
+     * @return If parameters of a type can be transformed off the main thread (see {@link ParameterType#isThreadSafe()}).
+     */
+    protected static boolean isThreadSafe(Class<?> type) {
+        if (type.equals(String.class)) {
+            return (true);
+        }
+
+        ParameterType<?> parameterType = parameterTypes.get(type);
+        return (parameterType != null && parameterType.isThreadSafe());
+    }
+
+    /**
+     * Starts any lookup a parameter needs before it can be transformed.
+     *
+     * @param sender      The CommandSender executing the command
+     * @param parameter   The String which will be transformed
+     * @param transformTo The class we should use to fetch our ParameterType
+     * @return A future to wait for before transforming, or null if the parameter can be transformed right away.
+     */
+    protected static CompletableFuture<?> prepareParameter(CommandSender sender, String parameter, Class<?> transformTo) {
+        ParameterType parameterType = parameterTypes.get(transformTo);
+
+        if (parameterType instanceof AsyncParameterType) {
+            return (((AsyncParameterType) parameterType).prepare(sender, parameter));
+        }
+
+        return (null);
     }
 
     /**
      * Tab completes a parameter.
      *
-     * @param sender            The Player tab completing the command (not CommandSender as tab completion is for players only)
-     * @param parameter         The last thing the player typed in their chat box before hitting tab ('' if none)
-     * @param transformTo       The class we should use to fetch our ParameterType (which we delegate tab completing down)
-     * @param tabCompleteFlags  The list of custom flags to use when tab completing this parameter.
-     * @return A List<String>   of available tab completions. (empty if none)
+     * @param sender    The Player tab completing the command (not CommandSender as tab completion is for players only)
+     * @param source    The last thing the player typed in their chat box before hitting tab ('' if none)
+     * @param parameter The parameter being completed (its ParameterType does the completing)
+     * @param sink      The sink to add the completions to.
      */
-    protected static List<String> tabCompleteParameter(Player sender, String parameter, Class<?> transformTo, String[] tabCompleteFlags) {
-        if (!parameterTypes.containsKey(transformTo)) {
-            return (new ArrayList<>());
+    protected static void tabCompleteParameter(Player sender, String source, ParameterData parameter, CompletionSink sink) {
+        ParameterType<?> parameterType = parameterTypes.get(parameter.getParamterClass());
+
+        if (parameterType != null) {
+            parameterType.tabComplete(sender, parameter.getTabCompleteFlagSet(), source, sink);
         }
+    }
 
-        return (parameterTypes.get(transformTo).tabComplete(sender, ImmutableSet.copyOf(tabCompleteFlags), parameter));
+    /**
+     * @return The ranker for completions of a parameter.
+     */
+    protected static CompletionRanker getCompletionRanker(ParameterData parameter) {
+        ParameterType<?> parameterType = parameterTypes.get(parameter.getParamterClass());
+        return (parameterType == null ? CompletionRanker.DEFAULT : parameterType.getCompletionRanker());
     }
 }
@@ -1,17 +1,13 @@
 package club.cloudcastgames.castlib.command;
 
-import club.cloudcastgames.castlib.command.param.ParameterData;
 import org.bukkit.Server;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.SimpleCommandMap;
 import org.bukkit.entity.Player;
-import org.bukkit.util.StringUtil;
 
 import java.util.*;
 
 public class CastCommandMap extends SimpleCommandMap {
-    protected static Map<UUID, String[]> parameters = new HashMap<>();
-
     public CastCommandMap(Server server) {
         super(server);
     }
@@ -23,99 +19,34 @@ public class CastCommandMap extends SimpleCommandMap {
         }
 
         Player player = (Player) sender;
-        parameters.put(player.getUniqueId(), cmdLine.split(" "));
+        CommandLine line = CommandLine.parse(cmdLine);
+        // Tab completions have no command yet; parameter types can still read the line from the context.
+        CommandContext context = new CommandContext(player, line, null, null, line, System.nanoTime());
 
         try {
-            int spaceIndex = cmdLine.indexOf(' ');
-            Set<String> completions = new HashSet<>();
-
-            boolean doneHere = false;
-
-            CommandLoop:
-            for (CommandData command : CastCommandHandler.getCommands()) {
-                if (!command.canAccess(player)) {
-                    continue;
-                }
-
-                for (String alias : command.getNames()) {
-                    String split = alias.split(" ")[0];
-
-                    if (spaceIndex != -1) {
-                        split = alias;
-                    }
-
-                    if (StringUtil.startsWithIgnoreCase(split.trim(), cmdLine.trim()) || StringUtil.startsWithIgnoreCase(cmdLine.trim(), split.trim())) {
-                        if (spaceIndex == -1 && cmdLine.length() < alias.length()) {
-                            // Complete the command
-                            completions.add("/" + split.toLowerCase());
-                        } else if (cmdLine.toLowerCase().startsWith(alias.toLowerCase() + " ") && command.getParameters().size() > 0) {
-                            // Complete the params
-                            int paramIndex = (cmdLine.split(" ").length - alias.split(" ").length);
-
-                            // If they didn't hit space, complete the param before it.
-                            if (paramIndex == command.getParameters().size() || !cmdLine.endsWith(" ")) {
-                                paramIndex = paramIndex - 1;
-                            }
-
-                            if (paramIndex < 0) {
-                                paramIndex = 0;
-                            }
-
-                            ParameterData paramData = command.getParameters().get(paramIndex);
-                            String[] params = cmdLine.split(" ");
-
-                            for (String completion : CastCommandHandler.tabCompleteParameter(player, cmdLine.endsWith(" ") ? "" : params[params.length - 1], paramData.getParamterClass(), paramData.getTabCompleteFlags())) {
-                                completions.add(completion);
-                            }
-                            doneHere = true;
+            List<String> completionList = context.call(() -> CommandCompleter.complete(player, line, CastCommandHandler.getCommandTrie()));
+            // While the command itself is being typed, vanilla commands are offered alongside ours.
+            boolean completingLabel = line.size() <= 1 && !line.endsWithSpace();
 
-                            break CommandLoop;
-                        } else {
-                            String halfSplitString = split.toLowerCase().replaceFirst(alias.split(" ")[0].toLowerCase(), "").trim();
-                            String[] splitString = halfSplitString.split(" ");
-
-                            String fixedAlias = splitString[splitString.length - 1].trim();
-                            String lastArg = cmdLine.endsWith(" ") ? "" : cmdLine.split(" ")[cmdLine.split(" ").length - 1];
-
-                            if (fixedAlias.length() >= lastArg.length()) {
-                                completions.add(fixedAlias);
-                            }
-
-                            doneHere = true;
-                        }
-                    }
-                }
-            }
-
-            List<String> completionList = new ArrayList<>(completions);
-
-            if (!doneHere) {
+            if (completionList == null || completingLabel) {
                 List<String> vanillaCompletionList = super.tabComplete(sender, cmdLine);
 
-                if (vanillaCompletionList == null) {
-                    vanillaCompletionList = new ArrayList<String>();
+                if (completionList == null) {
+                    completionList = new ArrayList<>();
                 }
 
-                for (String vanillaCompletion : vanillaCompletionList) {
-                    completionList.add(vanillaCompletion);
+                if (vanillaCompletionList != null) {
+                    completionList.addAll(vanillaCompletionList);
                 }
-            }
-            Collections.sort(completionList, new Comparator<String>() {
-                @Override
-                public int compare(String o1, String o2) {
-                    return (o2.length() - o1.length());
-                }
-            });
 
-            completionList.remove("w");
+                completionList.remove("w");
+            }
 
             return (completionList);
         } catch (Exception ex) {
             ex.printStackTrace();
 
             return (new ArrayList<>());
-        } finally {
-            parameters.remove(player.getUniqueId());
         }
     }
 }
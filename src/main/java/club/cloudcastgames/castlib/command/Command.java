@@ -13,4 +13,43 @@ public @interface Command {
     String permission() default "";
     boolean async() default false;
     boolean hidden() default false;
+
+    /**
+     * The pool async commands run in, as configured under "async.pools" in CastLib's config.
+     * Commands in a pool which isn't configured use the default pool.
+     */
+    String asyncPool() default "default";
+
+    /**
+     * If a sender can only run one of this (async) command at a time.
+     * A run which timed out keeps it taken until its thread actually stops.
+     */
+    boolean exclusive() default false;
+
+    /**
+     * How long (in milliseconds) an async command may queue and run for before it's cancelled,
+     * or 0 to use its pool's timeout.
+     */
+    long timeout() default 0;
+
+    /**
+     * How long (in milliseconds) a player has to wait between uses of this command, or 0 for no cooldown.
+     */
+    long cooldown() default 0;
+
+    /**
+     * How many times a player can use this command every {@link #ratePeriod()}, or 0 for no limit.
+     * Uses are allowed in bursts, as long as the average stays under the limit.
+     */
+    int rateLimit() default 0;
+
+    /**
+     * How many times all players together can use this command every {@link #ratePeriod()}, or 0 for no limit.
+     */
+    int globalRateLimit() default 0;
+
+    /**
+     * The period (in milliseconds) of {@link #rateLimit()} and {@link #globalRateLimit()}.
+     */
+    long ratePeriod() default 1000;
 }
@@ -0,0 +1,113 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.command.param.CompletionRanker;
+import club.cloudcastgames.castlib.command.param.CompletionSink;
+import club.cloudcastgames.castlib.command.param.ParameterData;
+import org.bukkit.entity.Player;
+
+import java.util.List;
+
+/**
+ * Tab completion over the command trie.
+ * Only the nodes along the typed line and the children matching the last token are looked at,
+ * so the cost depends on what was typed and how many completions there are, not on how many commands exist.
+ * At most {@link CastCommandHandler#getCompletionLimit()} completions are offered, best ranked first.
+ */
+public final class CommandCompleter {
+
+    // Static utility class -- cannot be created.
+    private CommandCompleter() {
+    }
+
+    /**
+     * Completes a command line.
+     *
+     * @param player The Player tab completing.
+     * @param line   The tokenized line (without a prepended '/')
+     * @param trie   The trie of commands to complete from.
+     * @return The completions, or null if the line doesn't start with any CastLib command the player can see.
+     */
+    public static List<String> complete(Player player, CommandLine line, CommandTrie trie) {
+        return (complete(player, line, trie, CastCommandHandler.getCompletionLimit()));
+    }
+
+    /**
+     * Completes a command line, keeping only the best few completions.
+     *
+     * @param limit The most completions to return.
+     * @see #complete(Player, CommandLine, CommandTrie)
+     */
+    public static List<String> complete(Player player, CommandLine line, CommandTrie trie, int limit) {
+        // Tokens which have been finished by a space, the rest is what we're completing.
+        int finished = line.endsWithSpace() ? line.size() : Math.max(0, line.size() - 1);
+        String partial = line.last();
+        String input = line.getLine();
+        CommandNode node = trie.getRoot();
+        CommandData command = null;
+        int commandTokens = 0;
+        int token = 0;
+
+        for (; token < finished; token++) {
+            CommandNode child = node.child(input, line.start(token), line.end(token));
+
+            if (child == null || !child.canReach(player)) {
+                break;
+            }
+
+            node = child;
+
+            if (node.command != null && node.command.canAccess(player)) {
+                command = node.command;
+                commandTokens = token + 1;
+            }
+        }
+
+        if (token == 0 && finished > 0) {
+            return (null);
+        }
+
+        ParameterData parameter = null;
+
+        if (command != null) {
+            List<ParameterData> parameters = command.getParameters();
+            int parameterIndex = finished - commandTokens;
+
+            // Wildcards take everything after them.
+            if (parameterIndex >= parameters.size() && !parameters.isEmpty() && parameters.get(parameters.size() - 1).isWildcard()) {
+                parameterIndex = parameters.size() - 1;
+            }
+
+            if (parameterIndex < parameters.size()) {
+                parameter = parameters.get(parameterIndex);
+            }
+        }
+
+        CompletionSink sink = new CompletionSink(partial, limit, parameter == null ? CompletionRanker.DEFAULT : CastCommandHandler.getCompletionRanker(parameter));
+
+        if (token == finished) {
+            // The whole line is a path in the trie, so the last token may be one of this node's children.
+            // Commands (rather than subcommands) are completed with their slash.
+            completeChildren(player, node, partial, token == 0 ? "/" : "", sink);
+        }
+
+        if (parameter != null) {
+            CastCommandHandler.tabCompleteParameter(player, partial, parameter, sink);
+        }
+
+        return (sink.getCompletions());
+    }
+
+    private static void completeChildren(Player player, CommandNode node, String partial, String prefix, CompletionSink sink) {
+        // Keys are sorted, so everything starting with the partial token sits in one run.
+        for (int index = node.lowerBound(partial, 0, partial.length()); index < node.keys.length; index++) {
+            if (!CommandTrie.startsWith(node.keys[index], partial)) {
+                break;
+            }
+
+            // Ranked without the slash, which isn't part of what was typed. Keys come in order, so the sink can fill up.
+            if (node.children[index].canReach(player) && !sink.add(prefix + node.keys[index], CompletionRanker.DEFAULT.rank(partial, node.keys[index]))) {
+                break;
+            }
+        }
+    }
+}
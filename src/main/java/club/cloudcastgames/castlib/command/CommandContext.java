@@ -0,0 +1,212 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.stats.CommandOutcome;
+import club.cloudcastgames.castlib.command.stats.CommandPhase;
+import lombok.Getter;
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Everything about a single command invocation (or tab completion), created once when it's dispatched.
+ * <p>
+ * While a command runs, including its parameter transforms and on async threads,
+ * the context is available from {@link #current()}. It's cleared again as soon as the invocation is done,
+ * so nothing is kept around for players who leave.
+ */
+public final class CommandContext {
+    private static final ThreadLocal<CommandContext> CURRENT = new ThreadLocal<>();
+
+    @Getter private final CommandSender sender;
+    @Getter private final CommandLine line;
+    @Getter private final String alias;
+    @Getter private final CommandData command;
+    @Getter private final CommandLine arguments;
+    @Getter private final long timestamp;
+    @Getter private final long startNanos;
+    // How long each phase took; only kept for the journal. Written before the volatile outcome, like finishNanos.
+    private final long[] phaseNanos;
+    private long finishNanos;
+    private volatile CommandOutcome outcome;
+    // Tasks to run on the main thread once the command method returns.
+    private List<Runnable> syncTasks;
+
+    CommandContext(CommandSender sender, CommandLine line, String alias, CommandData command, CommandLine arguments, long startNanos) {
+        this.sender = sender;
+        this.line = line;
+        this.alias = alias;
+        this.command = command;
+        this.arguments = arguments;
+        this.timestamp = System.currentTimeMillis();
+        this.startNanos = startNanos;
+        // Allocated up front so the journal's thread never sees it half-created.
+        this.phaseNanos = CommandJournal.isEnabled() ? new long[CommandPhase.values().length] : null;
+    }
+
+    /**
+     * @return The context of the command being run (or tab completed) on this thread, or null if there isn't one.
+     */
+    public static CommandContext current() {
+        return (CURRENT.get());
+    }
+
+    /**
+     * @return The line exactly as it was typed (without a prepended '/').
+     */
+    public String getRawLine() {
+        return (line.getLine());
+    }
+
+    /**
+     * @return How the command ended, or null if it's still running (or this is a tab completion).
+     */
+    public CommandOutcome getOutcome() {
+        return (outcome);
+    }
+
+    /**
+     * Ends the run. A run only ends once, so a command which timed out isn't counted again when its thread stops.
+     *
+     * @return If this ended the run, or false if it had already ended.
+     */
+    synchronized boolean setOutcome(CommandOutcome outcome) {
+        if (this.outcome != null) {
+            return (false);
+        }
+
+        // Written before the volatile outcome, so whoever sees the outcome sees this too.
+        this.finishNanos = System.nanoTime();
+        this.outcome = outcome;
+        return (true);
+    }
+
+    /**
+     * @return When the command ended (in System#nanoTime), or 0 if it's still running.
+     */
+    public long getFinishNanos() {
+        return (outcome == null ? 0 : finishNanos);
+    }
+
+    /**
+     * @return How long a phase of the run took, in nanoseconds. Only known while the {@link CommandJournal} is on; 0 otherwise.
+     */
+    public long getPhaseNanos(CommandPhase phase) {
+        return (phaseNanos == null ? 0 : phaseNanos[phase.ordinal()]);
+    }
+
+    /**
+     * Adds to how long a phase took. Every phase has to be recorded before the outcome is set.
+     */
+    synchronized void record(CommandPhase phase, long nanos) {
+        // Once the run has ended, the journal may be reading the phases.
+        if (phaseNanos == null || outcome != null) {
+            return;
+        }
+
+        phaseNanos[phase.ordinal()] += nanos;
+    }
+
+    /**
+     * Runs a task on the main thread once the command method has returned, such as to apply what an async command worked out
+     * to the world. The task runs with this context, and is skipped if the method throws.
+     * In sync commands, it runs right after the method.
+     *
+     * @param task The task.
+     */
+    public synchronized void thenSync(Runnable task) {
+        if (syncTasks == null) {
+            syncTasks = new ArrayList<>();
+        }
+
+        syncTasks.add(task);
+    }
+
+    /**
+     * Runs the tasks from {@link #thenSync(Runnable)}, scheduling them on the main thread if this isn't it.
+     */
+    void runSyncTasks() {
+        List<Runnable> tasks;
+
+        synchronized (this) {
+            tasks = syncTasks;
+            syncTasks = null;
+        }
+
+        if (tasks == null) {
+            return;
+        }
+
+        Runnable runTasks = () -> run(() -> {
+            for (Runnable task : tasks) {
+                try {
+                    task.run();
+                } catch (Throwable ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+
+        if (Bukkit.isPrimaryThread()) {
+            runTasks.run();
+        } else {
+            new BukkitRunnable() {
+
+                public void run() {
+                    runTasks.run();
+                }
+
+            }.runTask(CastLib.getInstance());
+        }
+    }
+
+    /**
+     * @return If this is a tab completion rather than a command being run.
+     */
+    public boolean isTabCompletion() {
+        return (command == null);
+    }
+
+    /**
+     * Runs a task with this as the current context, restoring the previous context afterwards.
+     */
+    void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return (null);
+        });
+    }
+
+    /**
+     * Gets a result with this as the current context, restoring the previous context afterwards.
+     */
+    <T> T call(Supplier<T> task) {
+        CommandContext previous = CURRENT.get();
+        CURRENT.set(this);
+
+        try {
+            return (task.get());
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Runs a task with the given context, or just runs it if there's no context.
+     */
+    static void run(CommandContext context, Runnable task) {
+        if (context == null) {
+            task.run();
+        } else {
+            context.run(task);
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package club.cloudcastgames.castlib.command;
 
+import club.cloudcastgames.castlib.CastLib;
 import club.cloudcastgames.castlib.command.param.ParameterData;
+import club.cloudcastgames.castlib.command.stats.CommandOutcome;
+import club.cloudcastgames.castlib.command.stats.CommandPhase;
+import club.cloudcastgames.castlib.command.stats.CommandStats;
 import lombok.Getter;
 import net.md_5.bungee.api.ChatColor;
 import net.md_5.bungee.api.chat.BaseComponent;
@@ -8,35 +12,112 @@ import net.md_5.bungee.api.chat.ComponentBuilder;
 import net.md_5.bungee.api.chat.HoverEvent;
 import net.md_5.bungee.api.chat.TextComponent;
 import org.bukkit.command.CommandSender;
-import org.bukkit.command.ConsoleCommandSender;
-import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.spigotmc.CustomTimingsHandler;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public final class CommandData {
+    // Marks parameters left to be transformed on an async command's pool thread.
+    private static final Object DEFERRED = new Object();
+
     @Getter private String[] names;
+    @Getter private CommandLine[] tokenizedNames;
     @Getter private String permission;
+    // The permission's id in the PermissionCache.
+    private int permissionId;
     @Getter private String description;
     @Getter private boolean async;
     @Getter private boolean hidden;
+    @Getter private String asyncPool;
+    @Getter private boolean exclusive;
+    @Getter private long timeout;
+    @Getter private RateLimiter rateLimiter;
+    @Getter private Plugin owner;
     @Getter private List<ParameterData> parameters;
     @Getter private Method method;
+    @Getter private String methodName;
+    @Getter private CommandInvoker invoker;
     @Getter private CustomTimingsHandler timingsHandler;
+    @Getter private CommandStats stats = new CommandStats();
     @Getter private boolean consoleAllowed;
 
     public CommandData(Command commandAnn, List<ParameterData> parameters, Method method, boolean consoleAllowed) {
+        this(commandAnn, parameters, CommandInvoker.of(method), method.getName(), consoleAllowed);
+        this.method = method;
+    }
+
+    /**
+     * Creates a command which is called through the given invoker rather than a reflected method,
+     * as done by registries generated by the CastLib annotation processor.
+     * {@link #getMethod()} is null for these commands.
+     */
+    public CommandData(Command commandAnn, List<ParameterData> parameters, CommandInvoker invoker, String methodName, boolean consoleAllowed) {
         this.names = commandAnn.names();
+        this.tokenizedNames = new CommandLine[names.length];
         this.permission = commandAnn.permission();
+        this.permissionId = PermissionCache.idOf(permission);
         this.description = commandAnn.description();
         this.async = commandAnn.async();
         this.hidden = commandAnn.hidden();
+        this.asyncPool = commandAnn.asyncPool();
+        this.exclusive = commandAnn.exclusive();
+        this.timeout = commandAnn.timeout();
+        this.rateLimiter = RateLimiter.of(commandAnn.cooldown(), commandAnn.rateLimit(), commandAnn.globalRateLimit(), commandAnn.ratePeriod());
         this.parameters = parameters;
-        this.method = method;
+        this.invoker = invoker;
+        this.methodName = methodName;
         this.consoleAllowed = consoleAllowed;
         this.timingsHandler = new CustomTimingsHandler("CommandHandler - " + getName());
+
+        for (int index = 0; index < names.length; index++) {
+            tokenizedNames[index] = CommandLine.parse(names[index]);
+        }
+    }
+
+    void setOwner(Plugin owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Counts how a run of this command ended, in its stats and in the context of the run.
+     * The run's phases have to be recorded first, since the context is journaled here.
+     *
+     * @param outcome How the run ended.
+     * @param context The context of the run, or null if there isn't one.
+     * @return If this ended the run, or false if it had already ended (such as by timing out).
+     */
+    boolean count(CommandOutcome outcome, CommandContext context) {
+        if (context != null && context.getCommand() == this) {
+            if (!context.setOutcome(outcome)) {
+                return (false);
+            }
+
+            stats.count(outcome);
+            CommandJournal.append(context);
+            return (true);
+        }
+
+        stats.count(outcome);
+        return (true);
+    }
+
+    /**
+     * Records how long a phase of a run of this command took, in its stats and in the context of the run.
+     *
+     * @param phase   The phase.
+     * @param nanos   How long it took, in nanoseconds.
+     * @param context The context of the run, or null if there isn't one.
+     */
+    void record(CommandPhase phase, long nanos, CommandContext context) {
+        stats.record(phase, nanos);
+
+        if (context != null && context.getCommand() == this) {
+            context.record(phase, nanos);
+        }
     }
 
     public String getName() {
@@ -44,18 +125,7 @@ public final class CommandData {
     }
 
     public boolean canAccess(CommandSender sender) {
-        if (!(sender instanceof Player)) return (true);
-
-        switch (permission) {
-            case "op":
-                return (sender.isOp());
-            case "console":
-                return (sender instanceof ConsoleCommandSender);
-            case "":
-                return (true);
-            default:
-                return (sender.hasPermission(permission));
-        }
+        return (PermissionCache.canAccess(sender, permission, permissionId));
     }
 
     public String getUsageString() {
@@ -74,55 +144,243 @@ public final class CommandData {
         return ("/" + aliasUsed.toLowerCase() + " " + stringBuilder.toString().trim().toLowerCase());
     }
 
+    /**
+     * @deprecated Use {@link #execute(CommandSender, CommandLine)}, which doesn't need the arguments split into an array.
+     */
+    @Deprecated
     public void execute(CommandSender sender, String[] params) {
-        // We start to build the parameters we call the method with here.
-        List<Object> transformedParameters = new ArrayList<>();
+        execute(sender, CommandLine.of(params));
+    }
+
+    public void execute(CommandSender sender, CommandLine params) {
+        boolean watched = CommandWatchdog.enter(this, sender);
+
+        try {
+            Object[] arguments = transform(sender, params, false);
+
+            if (arguments != null) {
+                invoke(sender, arguments);
+            }
+        } finally {
+            if (watched) {
+                CommandWatchdog.exit();
+            }
+        }
+    }
+
+    /**
+     * Runs the command, on the main thread. Sync commands are just executed.
+     * For async commands, the parameters which need the main thread are transformed here, and the rest of the parameters
+     * and the command method itself run in the command's pool (see {@link AsyncCommandExecutor}).
+     */
+    void run(CommandSender sender, CommandLine params) {
+        if (!async) {
+            execute(sender, params);
+            return;
+        }
+
+        boolean watched = CommandWatchdog.enter(this, sender);
+
+        try {
+            long transformStart = System.nanoTime();
+            Object[] arguments = transform(sender, params, true);
+
+            if (arguments != null) {
+                AsyncCommandExecutor.submit(this, sender, params, arguments, System.nanoTime() - transformStart);
+            }
+        } finally {
+            if (watched) {
+                CommandWatchdog.exit();
+            }
+        }
+    }
+
+    /**
+     * The part of an async command which runs in its pool: transforms the parameters which were left for it, then calls the method.
+     * Both parts of the transform are recorded together, as one sample.
+     *
+     * @param arguments      The arguments from {@link #transform(CommandSender, CommandLine, boolean)}.
+     * @param transformNanos How long the part of the transform on the main thread took.
+     */
+    void complete(CommandSender sender, CommandLine params, Object[] arguments, long transformNanos) {
+        long transformStart = System.nanoTime() - transformNanos;
+
+        for (int parameterIndex = 0; parameterIndex < arguments.length; parameterIndex++) {
+            if (arguments[parameterIndex] != DEFERRED) {
+                continue;
+            }
+
+            ParameterData parameter = getParameters().get(parameterIndex);
+            Object result = transformParameter(sender, parameter, passedParameter(params, parameterIndex, parameter), transformStart);
+
+            if (result == null) {
+                return;
+            }
+
+            arguments[parameterIndex] = result;
+        }
+
+        record(CommandPhase.TRANSFORM, System.nanoTime() - transformStart, CommandContext.current());
+        invoke(sender, arguments);
+    }
 
-        // Add the sender.
-        // If the method is expecting a Player or a general CommandSender will be handled by Java.
-        transformedParameters.add(sender);
+    /**
+     * Transforms the arguments of a run into the method's parameters.
+     *
+     * @param deferThreadSafe If parameters whose type is thread-safe should be left for the pool thread (as {@link #DEFERRED}).
+     *                        The transform is then only recorded if the run ends here; otherwise the caller passes
+     *                        how long it took on to {@link #complete(CommandSender, CommandLine, Object[], long)}.
+     * @return The parameters, or null if the command can't run (yet): the sender has been told why,
+     *         or it's waiting for a parameter's lookup and runs again once it's done.
+     */
+    Object[] transform(CommandSender sender, CommandLine params, boolean deferThreadSafe) {
+        // We start to build the parameters we call the method with here.
+        // The sender is passed separately; if the method is expecting a Player
+        // or a general CommandSender will be handled by the invoker.
+        Object[] transformedParameters = new Object[getParameters().size()];
+        long transformStart = System.nanoTime();
 
         // Fill in / validate parameters
         for (int parameterIndex = 0; parameterIndex < getParameters().size(); parameterIndex++) {
             ParameterData parameter = getParameters().get(parameterIndex);
-            String passedParameter = (parameterIndex < params.length ? params[parameterIndex] : parameter.getDefaultValue()).trim();
 
-            if (parameterIndex >= params.length && (parameter.getDefaultValue() == null || parameter.getDefaultValue().isEmpty())) {
+            if (parameterIndex >= params.size() && (parameter.getDefaultValue() == null || parameter.getDefaultValue().isEmpty())) {
                 TextComponent component = new TextComponent();
 
                 component.setText(ChatColor.RED + "Usage: " + getUsageString());
 
                 sender.sendMessage(component.getText());
-                return;
+                usageError(transformStart);
+                return (null);
             }
 
-            // Wildcards "capture" all strings after them
-            if (parameter.isWildcard() && !passedParameter.trim().equalsIgnoreCase(parameter.getDefaultValue().trim())) {
-                passedParameter = toString(params, parameterIndex);
-            }
+            String passedParameter = passedParameter(params, parameterIndex, parameter);
 
-            Object result = CastCommandHandler.transformParameter(sender, passedParameter, parameter.getParamterClass());
+            if (deferThreadSafe && CastCommandHandler.isThreadSafe(parameter.getParamterClass())) {
+                transformedParameters[parameterIndex] = DEFERRED;
+            } else {
+                // Some parameters need a slow lookup first (see AsyncParameterType),
+                // so we wait for it without blocking and then run the command again.
+                CompletableFuture<?> pending = CastCommandHandler.prepareParameter(sender, passedParameter, parameter.getParamterClass());
 
-            if (result == null) return;
+                if (pending != null) {
+                    CommandContext context = CommandContext.current();
+                    pending.whenComplete((ignored, error) -> resume(context, sender, params, error));
+                    return (null);
+                }
 
-            transformedParameters.add(result);
+                Object result = transformParameter(sender, parameter, passedParameter, transformStart);
+
+                if (result == null) {
+                    return (null);
+                }
+
+                transformedParameters[parameterIndex] = result;
+            }
 
             if (parameter.isWildcard()) {
                 break;
             }
         }
 
-        timingsHandler.startTiming();
+        if (!deferThreadSafe) {
+            record(CommandPhase.TRANSFORM, System.nanoTime() - transformStart, CommandContext.current());
+        }
+
+        return (transformedParameters);
+    }
+
+    private String passedParameter(CommandLine params, int parameterIndex, ParameterData parameter) {
+        String passedParameter = (parameterIndex < params.size() ? params.get(parameterIndex) : parameter.getDefaultValue()).trim();
+
+        // Wildcards "capture" all strings after them
+        if (parameter.isWildcard() && !passedParameter.trim().equalsIgnoreCase(parameter.getDefaultValue().trim())) {
+            passedParameter = params.remainder(parameterIndex);
+        }
+
+        return (passedParameter);
+    }
+
+    /**
+     * @return The transformed parameter, or null if it's invalid (the sender has been told why, and the run counted).
+     */
+    private Object transformParameter(CommandSender sender, ParameterData parameter, String passedParameter, long transformStart) {
+        Object result = CastCommandHandler.transformParameter(sender, passedParameter, parameter.getParamterClass(), parameter.isAmounts());
+
+        // The parameter type has already told the sender what was wrong.
+        if (result == null) {
+            usageError(transformStart);
+            return (null);
+        }
+
+        if (!parameter.isInRange(result)) {
+            sender.sendMessage(ChatColor.RED + parameter.getRangeMessage());
+            usageError(transformStart);
+            return (null);
+        }
+
+        return (result);
+    }
+
+    private void usageError(long transformStart) {
+        CommandContext context = CommandContext.current();
+
+        record(CommandPhase.TRANSFORM, System.nanoTime() - transformStart, context);
+        count(CommandOutcome.USAGE_ERROR, context);
+    }
+
+    private void invoke(CommandSender sender, Object[] arguments) {
+        CommandContext context = CommandContext.current();
+        long executionStart = System.nanoTime();
+        // Timings are only kept on the main thread.
+        boolean timed = !async;
+
+        if (timed) {
+            timingsHandler.startTiming();
+        }
+
+        Throwable error = null;
 
         try {
-            // null = static method.
-            method.invoke(null, transformedParameters.toArray());
-        } catch (Exception ex) {
+            invoker.invoke(sender, arguments);
+        } catch (Throwable ex) {
+            error = ex;
+        }
+
+        if (timed) {
+            timingsHandler.stopTiming();
+        }
+
+        // Recorded before the outcome is counted, which journals the run.
+        record(CommandPhase.EXECUTION, System.nanoTime() - executionStart, context);
+
+        // If the run timed out, its sender has already been told, and whatever it left behind is dropped.
+        if (error == null) {
+            if (count(CommandOutcome.SUCCESS, context) && context != null) {
+                context.runSyncTasks();
+            }
+        } else if (count(CommandOutcome.EXCEPTION, context)) {
             sender.sendMessage(ChatColor.RED + "It appears there was some issues processing your command...");
-            ex.printStackTrace();
+            error.printStackTrace();
         }
+    }
+
+    private void resume(CommandContext context, CommandSender sender, CommandLine params, Throwable error) {
+        if (error != null) {
+            sender.sendMessage(ChatColor.RED + "It appears there was some issues processing your command...");
+            error.printStackTrace();
+            count(CommandOutcome.EXCEPTION, context);
+            return;
+        }
+
+        // Back to the main thread, where the parameters are transformed (and sync commands run).
+        new BukkitRunnable() {
+
+            public void run() {
+                CommandContext.run(context, () -> CommandData.this.run(sender, params));
+            }
 
-        timingsHandler.stopTiming();
+        }.runTask(CastLib.getInstance());
     }
 
     public static String toString(String[] args, int start) {
@@ -0,0 +1,50 @@
+package club.cloudcastgames.castlib.command;
+
+import org.bukkit.command.CommandSender;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+
+/**
+ * Calls a command method with its sender and already transformed parameters.
+ * Each command gets its own invoker when it is registered, so execution never goes through Method#invoke.
+ */
+@FunctionalInterface
+public interface CommandInvoker {
+
+    /**
+     * Invokes the command method.
+     * Exceptions thrown by the command are rethrown as-is, not wrapped.
+     *
+     * @param sender    The CommandSender executing the command.
+     * @param arguments The transformed parameters, in method order (excluding the sender).
+     */
+    void invoke(CommandSender sender, Object[] arguments) throws Throwable;
+
+    /**
+     * Creates an invoker for a static command method.
+     *
+     * @param method The method to call.
+     * @return An invoker calling the method directly through a method handle.
+     */
+    static CommandInvoker of(Method method) {
+        MethodHandle handle;
+
+        try {
+            // Command classes don't have to be public, only their methods.
+            method.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(method);
+        } catch (IllegalAccessException e) {
+            throw (new IllegalArgumentException("Cannot access command method '" + method.getName() + "'", e));
+        }
+
+        // (Sender, A, B, ...)R becomes (CommandSender, Object[])void, with the casts and unboxing done by the handle.
+        MethodHandle spread = handle
+                .asSpreader(Object[].class, method.getParameterCount() - 1)
+                .asType(MethodType.methodType(void.class, CommandSender.class, Object[].class));
+
+        return ((sender, arguments) -> spread.invokeExact(sender, arguments));
+    }
+}
@@ -0,0 +1,377 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.stats.CommandPhase;
+import com.google.common.base.Preconditions;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * An opt-in record of every command run ("journal.enabled" in CastLib's config): who ran what, with which arguments,
+ * how long each phase took and how it ended. Journals can be read back with {@link CommandJournalReader},
+ * for example to replay a lag spike offline.
+ * <p>
+ * Finished runs are put in a ring buffer without locking, and a background thread writes them to compact binary files
+ * which are rotated once they reach "journal.max-file-size" megabytes; only the newest "journal.max-files" are kept.
+ * When the writer can't keep up and the buffer is full, runs are dropped (and counted) rather than slowing commands down.
+ * <p>
+ * The format: a file starts with {@link #MAGIC} and the wall clock time in milliseconds it was started at.
+ * Every record starts with its tag. {@link #TAG_COMMAND} gives a command an id for the rest of the file
+ * (a varint id and the command's name), and {@link #TAG_RUN} is a run: the nanoseconds since the previous run started
+ * (a zigzag varlong, as runs are written when they end), the sender (a kind byte, followed by the UUID for players),
+ * the command id, the alias and arguments as typed, the outcome's ordinal, the phase count and every phase's nanoseconds,
+ * and the nanoseconds the whole run took. Strings are a varint length and UTF-8.
+ */
+public final class CommandJournal {
+    static final int MAGIC = 0x434C4A31; // "CLJ1"
+    static final int TAG_COMMAND = 1;
+    static final int TAG_RUN = 2;
+    static final int SENDER_CONSOLE = 0;
+    static final int SENDER_PLAYER = 1;
+    static final int SENDER_OTHER = 2;
+
+    private static final CommandPhase[] PHASES = CommandPhase.values();
+    // How long the writer sleeps when there's nothing to write.
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final long DROP_WARNING_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+    // How long runs are discarded for after the journal couldn't be written, before trying again.
+    private static final long RETRY_INTERVAL = TimeUnit.MINUTES.toNanos(1);
+
+    private static volatile boolean enabled = false;
+    private static AtomicReferenceArray<CommandContext> ring;
+    private static int mask;
+    // The next sequence to claim, and the next one the writer will write.
+    private static final AtomicLong head = new AtomicLong();
+    private static volatile long tail;
+    private static final AtomicLong dropped = new AtomicLong();
+    private static Writer writer;
+    private static boolean initiated = false;
+
+    private CommandJournal() {}
+
+    /**
+     * Starts the journal if it's enabled in the config.
+     * This can only be called once, and is called automatically when CastLib enables.
+     */
+    public static void init() {
+        Preconditions.checkState(!initiated);
+        initiated = true;
+
+        if (!CastLib.getInstance().getConfig().getBoolean("journal.enabled", false)) {
+            return;
+        }
+
+        // Rounded up to a power of two, so a sequence maps to a slot with a mask.
+        int capacity = Integer.highestOneBit(Math.max(2, CastLib.getInstance().getConfig().getInt("journal.buffer-size", 8192)) * 2 - 1);
+        File directory = new File(CastLib.getInstance().getDataFolder(), CastLib.getInstance().getConfig().getString("journal.directory", "journal"));
+        long maxFileSize = CastLib.getInstance().getConfig().getLong("journal.max-file-size", 64L) * 1024 * 1024;
+        int maxFiles = Math.max(1, CastLib.getInstance().getConfig().getInt("journal.max-files", 10));
+
+        ring = new AtomicReferenceArray<>(capacity);
+        mask = capacity - 1;
+        writer = new Writer(directory, maxFileSize, maxFiles);
+        writer.start();
+        enabled = true;
+    }
+
+    /**
+     * Stops the journal, after writing everything still in the buffer.
+     */
+    public static void shutdown() {
+        if (!enabled) {
+            return;
+        }
+
+        enabled = false;
+        writer.running = false;
+        LockSupport.unpark(writer);
+
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return If the journal is on.
+     */
+    public static boolean isEnabled() {
+        return (enabled);
+    }
+
+    /**
+     * @return How many runs were dropped because the buffer was full.
+     */
+    public static long getDropped() {
+        return (dropped.get());
+    }
+
+    /**
+     * Puts a finished run in the buffer. Never blocks: if the buffer is full, the run is dropped.
+     */
+    static void append(CommandContext context) {
+        if (!enabled) {
+            return;
+        }
+
+        long sequence;
+
+        do {
+            sequence = head.get();
+
+            if (sequence - tail >= ring.length()) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        // The slot is free: the writer empties it before moving the tail past it.
+        ring.set((int) sequence & mask, context);
+    }
+
+    /**
+     * The thread writing the buffer to disk.
+     */
+    private static final class Writer extends Thread {
+        private final File directory;
+        private final long maxFileSize;
+        private final int maxFiles;
+        // Ids of the commands written to the current file, by name so unregistered commands aren't kept.
+        private final Map<String, Integer> commandIds = new HashMap<>();
+        private volatile boolean running = true;
+        private DataOutputStream output;
+        private long previousStart;
+        private long reportedDropped;
+        private long lastDropWarning;
+        // Set while writing fails; runs are discarded until retryAt, and the failure is only logged once.
+        private boolean failing;
+        private long retryAt;
+
+        private Writer(File directory, long maxFileSize, int maxFiles) {
+            super("CastLib Journal Writer");
+            setDaemon(true);
+
+            this.directory = directory;
+            this.maxFileSize = maxFileSize;
+            this.maxFiles = maxFiles;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    if (!drain()) {
+                        flush();
+                        warnIfDropped();
+                        LockSupport.parkNanos(IDLE_NANOS);
+                    }
+                }
+
+                drain();
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Writes every published run.
+         *
+         * @return If anything was written.
+         */
+        private boolean drain() {
+            boolean wrote = false;
+
+            while (true) {
+                int slot = (int) tail & mask;
+                CommandContext context = ring.get(slot);
+
+                // Not published yet (or nothing claimed at all).
+                if (context == null) {
+                    return (wrote);
+                }
+
+                ring.set(slot, null);
+                tail = tail + 1;
+                wrote = true;
+
+                if (failing && System.nanoTime() - retryAt < 0) {
+                    continue;
+                }
+
+                try {
+                    write(context);
+
+                    if (failing) {
+                        failing = false;
+                        CastLib.getInstance().getLogger().info("The command journal is being written again.");
+                    }
+                } catch (IOException ex) {
+                    fail(ex);
+                } catch (RuntimeException ex) {
+                    // One bad run mustn't stop the writer, or the buffer would fill up for good.
+                    CastLib.getInstance().getLogger().warning("Couldn't journal a run of /" + context.getAlias() + ": " + ex);
+                }
+            }
+        }
+
+        private void write(CommandContext context) throws IOException {
+            if (output == null || output.size() >= maxFileSize) {
+                rotate();
+            }
+
+            CommandData command = context.getCommand();
+            Integer id = commandIds.get(command.getName());
+
+            if (id == null) {
+                id = commandIds.size();
+                commandIds.put(command.getName(), id);
+
+                output.writeByte(TAG_COMMAND);
+                writeVarLong(id);
+                writeString(command.getName());
+            }
+
+            CommandLine arguments = context.getArguments();
+            CommandSender sender = context.getSender();
+
+            output.writeByte(TAG_RUN);
+            writeVarLong(zigzag(context.getStartNanos() - previousStart));
+            previousStart = context.getStartNanos();
+
+            if (sender instanceof Player) {
+                UUID uuid = ((Player) sender).getUniqueId();
+
+                output.writeByte(SENDER_PLAYER);
+                output.writeLong(uuid.getMostSignificantBits());
+                output.writeLong(uuid.getLeastSignificantBits());
+            } else {
+                output.writeByte(sender instanceof ConsoleCommandSender ? SENDER_CONSOLE : SENDER_OTHER);
+            }
+
+            writeVarLong(id);
+            writeString(context.getAlias());
+            writeString(arguments.isEmpty() ? "" : arguments.getLine().substring(arguments.start(0)));
+            output.writeByte(context.getOutcome().ordinal());
+            output.writeByte(PHASES.length);
+
+            for (CommandPhase phase : PHASES) {
+                writeVarLong(context.getPhaseNanos(phase));
+            }
+
+            writeVarLong(Math.max(0, context.getFinishNanos() - context.getStartNanos()));
+        }
+
+        private void rotate() throws IOException {
+            close();
+
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw (new IOException("Couldn't create " + directory));
+            }
+
+            // Sorting the names sorts the files by age.
+            String name = "commands-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date()) + ".journal";
+
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(directory, name)), 64 * 1024));
+            output.writeInt(MAGIC);
+            output.writeLong(System.currentTimeMillis());
+            commandIds.clear();
+            // Runs in the new file are timed from when it was started.
+            previousStart = System.nanoTime();
+
+            File[] files = directory.listFiles((dir, file) -> file.startsWith("commands-") && file.endsWith(".journal"));
+
+            if (files != null && files.length > maxFiles) {
+                Arrays.sort(files);
+
+                for (int index = 0; index < files.length - maxFiles; index++) {
+                    files[index].delete();
+                }
+            }
+        }
+
+        private void flush() {
+            if (output != null) {
+                try {
+                    output.flush();
+                } catch (IOException ex) {
+                    fail(ex);
+                }
+            }
+        }
+
+        /**
+         * Stops writing for a while after a failure, so a full disk or a missing directory isn't retried (and logged) on every run.
+         */
+        private void fail(IOException ex) {
+            close();
+
+            if (!failing) {
+                CastLib.getInstance().getLogger().warning("Couldn't write to the command journal: " + ex.getMessage() + ". Runs won't be journaled until it works again; retrying every minute.");
+            }
+
+            failing = true;
+            retryAt = System.nanoTime() + RETRY_INTERVAL;
+        }
+
+        private void close() {
+            if (output != null) {
+                try {
+                    output.close();
+                } catch (IOException ex) {
+                    // Nothing more can be done about it.
+                }
+
+                output = null;
+            }
+        }
+
+        private void warnIfDropped() {
+            long total = dropped.get();
+            long now = System.nanoTime();
+
+            if (total > reportedDropped && now - lastDropWarning > DROP_WARNING_INTERVAL) {
+                CastLib.getInstance().getLogger().warning("The command journal couldn't keep up and dropped " + (total - reportedDropped) + " runs; consider a larger journal.buffer-size.");
+                reportedDropped = total;
+                lastDropWarning = now;
+            }
+        }
+
+        private void writeString(String string) throws IOException {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            output.write(bytes);
+        }
+
+        private void writeVarLong(long value) throws IOException {
+            while ((value & ~0x7FL) != 0) {
+                output.writeByte((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+
+            output.writeByte((int) value);
+        }
+
+        private static long zigzag(long value) {
+            return ((value << 1) ^ (value >> 63));
+        }
+    }
+}
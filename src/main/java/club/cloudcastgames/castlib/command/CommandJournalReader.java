@@ -0,0 +1,184 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.command.stats.CommandOutcome;
+import club.cloudcastgames.castlib.command.stats.CommandPhase;
+import lombok.Getter;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Reads a file written by the {@link CommandJournal}, one run at a time.
+ * A file which was cut off (such as by a crash) just ends at its last complete run.
+ */
+public final class CommandJournalReader implements Closeable {
+    private static final CommandOutcome[] OUTCOMES = CommandOutcome.values();
+    private static final CommandPhase[] PHASES = CommandPhase.values();
+
+    private final DataInputStream input;
+    // The wall clock time the file was started at, in milliseconds.
+    @Getter private final long startMillis;
+    private final List<String> commands = new ArrayList<>();
+    private long offsetNanos;
+
+    /**
+     * Opens a journal file.
+     *
+     * @param file The file.
+     * @throws IOException If the file can't be read, or isn't a journal.
+     */
+    public CommandJournalReader(File file) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+
+        try {
+            if (input.readInt() != CommandJournal.MAGIC) {
+                throw (new IOException(file + " isn't a command journal."));
+            }
+
+            this.startMillis = input.readLong();
+        } catch (IOException ex) {
+            input.close();
+            throw (ex);
+        }
+    }
+
+    /**
+     * Reads the next run.
+     *
+     * @return The run, or null at the end of the file.
+     */
+    public Run next() throws IOException {
+        try {
+            while (true) {
+                int tag = input.read();
+
+                if (tag == -1) {
+                    return (null);
+                } else if (tag == CommandJournal.TAG_COMMAND) {
+                    int id = (int) readVarLong();
+                    String name = readString();
+
+                    while (commands.size() <= id) {
+                        commands.add(null);
+                    }
+
+                    commands.set(id, name);
+                } else if (tag == CommandJournal.TAG_RUN) {
+                    return (readRun());
+                } else {
+                    throw (new IOException("Unknown record " + tag + " in command journal."));
+                }
+            }
+        } catch (EOFException ex) {
+            // Cut off in the middle of a record.
+            return (null);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private Run readRun() throws IOException {
+        long delta = readVarLong();
+        offsetNanos += (delta >>> 1) ^ -(delta & 1);
+
+        int senderKind = input.readUnsignedByte();
+        UUID senderId = senderKind == CommandJournal.SENDER_PLAYER ? new UUID(input.readLong(), input.readLong()) : null;
+        String command = commands.get((int) readVarLong());
+        String alias = readString();
+        String arguments = readString();
+        int outcome = input.readUnsignedByte();
+        long[] phaseNanos = new long[PHASES.length];
+        int phases = input.readUnsignedByte();
+
+        for (int phase = 0; phase < phases; phase++) {
+            long nanos = readVarLong();
+
+            // Phases added after the file was written are left at 0; ones since removed are skipped.
+            if (phase < phaseNanos.length) {
+                phaseNanos[phase] = nanos;
+            }
+        }
+
+        long totalNanos = readVarLong();
+
+        return (new Run(offsetNanos, senderKind == CommandJournal.SENDER_CONSOLE, senderId, command, alias, arguments, outcome < OUTCOMES.length ? OUTCOMES[outcome] : null, phaseNanos, totalNanos));
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[(int) readVarLong()];
+        input.readFully(bytes);
+        return (new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private long readVarLong() throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int read = input.readUnsignedByte();
+            value |= (long) (read & 0x7F) << shift;
+
+            if ((read & 0x80) == 0) {
+                return (value);
+            }
+        }
+
+        throw (new IOException("Malformed varint in command journal."));
+    }
+
+    /**
+     * A recorded run of a command.
+     */
+    public static final class Run {
+        // When the run started, in nanoseconds since the file was started.
+        @Getter private final long offsetNanos;
+        @Getter private final boolean console;
+        // The player who ran the command, or null if it wasn't a player.
+        @Getter private final UUID senderId;
+        // The command's (first) name.
+        @Getter private final String command;
+        @Getter private final String alias;
+        @Getter private final String arguments;
+        // How the run ended, or null if it's an outcome this version doesn't know.
+        @Getter private final CommandOutcome outcome;
+        private final long[] phaseNanos;
+        @Getter private final long totalNanos;
+
+        private Run(long offsetNanos, boolean console, UUID senderId, String command, String alias, String arguments, CommandOutcome outcome, long[] phaseNanos, long totalNanos) {
+            this.offsetNanos = offsetNanos;
+            this.console = console;
+            this.senderId = senderId;
+            this.command = command;
+            this.alias = alias;
+            this.arguments = arguments;
+            this.outcome = outcome;
+            this.phaseNanos = phaseNanos;
+            this.totalNanos = totalNanos;
+        }
+
+        /**
+         * @return How long a phase of the run took, in nanoseconds.
+         */
+        public long getPhaseNanos(CommandPhase phase) {
+            return (phaseNanos[phase.ordinal()]);
+        }
+
+        /**
+         * @return The line as it was typed (without a prepended '/').
+         */
+        public String getLine() {
+            return (arguments.isEmpty() ? alias : alias + " " + arguments);
+        }
+    }
+}
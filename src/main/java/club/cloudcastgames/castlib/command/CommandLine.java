@@ -0,0 +1,253 @@
+package club.cloudcastgames.castlib.command;
+
+import java.util.Arrays;
+
+/**
+ * A command line split into tokens in a single pass.
+ * Tokens are stored as offsets into the original string, so nothing is copied until a token's value is asked for.
+ * <p>
+ * Tokens are separated by runs of spaces. A token starting with a double quote runs until the next
+ * unescaped double quote, and may contain spaces; inside quotes a backslash escapes the next character, whatever it is
+ * (so "a\ b" gives a b, and "a\"b" gives a"b). The closing quote has to end the token: if it's followed by anything
+ * but a space (as in "a"b), or the quote is never closed, the opening quote is treated as a normal character
+ * and the token ends at the next space, taken literally.
+ * Scanning is linear in the length of the line, whatever it contains.
+ */
+public final class CommandLine {
+    private static final int[] NO_BOUNDS = new int[0];
+
+    private final String line;
+    // Start and end offsets of every token. Starts of quoted tokens are stored inverted (~start).
+    private final int[] bounds;
+    private final int offset;
+    private final int count;
+    private final boolean trailingSpace;
+
+    private CommandLine(String line, int[] bounds, int offset, int count, boolean trailingSpace) {
+        this.line = line;
+        this.bounds = bounds;
+        this.offset = offset;
+        this.count = count;
+        this.trailingSpace = trailingSpace;
+    }
+
+    /**
+     * Tokenizes a command line.
+     *
+     * @param line The line to tokenize (without a prepended '/')
+     * @return The tokenized line.
+     */
+    public static CommandLine parse(String line) {
+        int length = line.length();
+        int[] bounds = NO_BOUNDS;
+        int count = 0;
+        int position = 0;
+
+        while (true) {
+            while (position < length && line.charAt(position) == ' ') {
+                position++;
+            }
+
+            if (position >= length) {
+                break;
+            }
+
+            int start = position;
+            boolean quoted = false;
+
+            if (line.charAt(position) == '"') {
+                int firstSpace = -1;
+                int scan = position + 1;
+
+                while (scan < length && line.charAt(scan) != '"') {
+                    // Escaped spaces count too, as they end the token if it turns out not to be quoted.
+                    boolean escape = line.charAt(scan) == '\\' && scan + 1 < length;
+                    int character = escape ? scan + 1 : scan;
+
+                    if (line.charAt(character) == ' ' && firstSpace == -1) {
+                        firstSpace = character;
+                    }
+
+                    scan += escape ? 2 : 1;
+                }
+
+                if (scan < length && (scan + 1 == length || line.charAt(scan + 1) == ' ')) {
+                    quoted = true;
+                    position = scan + 1;
+                } else if (firstSpace != -1) {
+                    // Unterminated, or closed in the middle of a token, so the quote is just part of a normal token.
+                    // Up to the closing quote (if any) there's no other quote for a token to start with, so this is
+                    // scanned again at most once.
+                    position = firstSpace;
+                } else {
+                    position = scan;
+
+                    while (position < length && line.charAt(position) != ' ') {
+                        position++;
+                    }
+                }
+            } else {
+                while (position < length && line.charAt(position) != ' ') {
+                    position++;
+                }
+            }
+
+            if (count * 2 == bounds.length) {
+                bounds = Arrays.copyOf(bounds, Math.max(8, bounds.length * 2));
+            }
+
+            bounds[count * 2] = quoted ? ~start : start;
+            bounds[count * 2 + 1] = position;
+            count++;
+        }
+
+        return (new CommandLine(line, bounds, 0, count, length > 0 && line.charAt(length - 1) == ' '));
+    }
+
+    /**
+     * Creates a line from tokens which have already been split.
+     * The tokens are taken literally; quotes in them are not interpreted.
+     *
+     * @param tokens The tokens.
+     * @return A line of the tokens joined by single spaces.
+     */
+    public static CommandLine of(String... tokens) {
+        StringBuilder builder = new StringBuilder();
+        int[] bounds = new int[tokens.length * 2];
+
+        for (int index = 0; index < tokens.length; index++) {
+            if (index > 0) {
+                builder.append(' ');
+            }
+
+            bounds[index * 2] = builder.length();
+            builder.append(tokens[index]);
+            bounds[index * 2 + 1] = builder.length();
+        }
+
+        return (new CommandLine(builder.toString(), bounds, 0, tokens.length, false));
+    }
+
+    /**
+     * @return The full line this was parsed from, including any tokens skipped with {@link #shift(int)}.
+     */
+    public String getLine() {
+        return (line);
+    }
+
+    /**
+     * @return The number of tokens in this view.
+     */
+    public int size() {
+        return (count - offset);
+    }
+
+    public boolean isEmpty() {
+        return (count == offset);
+    }
+
+    /**
+     * @return If the line ends in a space, meaning the last token is finished.
+     */
+    public boolean endsWithSpace() {
+        return (trailingSpace);
+    }
+
+    /**
+     * Gets the value of a token: its raw text, or for quoted tokens the text between the quotes with escapes removed.
+     *
+     * @param index The index of the token in this view.
+     * @return The token's value.
+     */
+    public String get(int index) {
+        int start = bounds[(offset + index) * 2];
+        int end = bounds[(offset + index) * 2 + 1];
+
+        if (start >= 0) {
+            return (line.substring(start, end));
+        }
+
+        StringBuilder builder = new StringBuilder(end - ~start);
+
+        for (int position = ~start + 1; position < end - 1; position++) {
+            char character = line.charAt(position);
+
+            if (character == '\\' && position + 1 < end - 1) {
+                character = line.charAt(++position);
+            }
+
+            builder.append(character);
+        }
+
+        return (builder.toString());
+    }
+
+    /**
+     * @return The last token's value, or "" if the line is finished (ends in a space) or empty.
+     */
+    public String last() {
+        return (trailingSpace || isEmpty() ? "" : get(size() - 1));
+    }
+
+    /**
+     * @return The offset in {@link #getLine()} where this token starts, including any opening quote.
+     */
+    public int start(int index) {
+        int start = bounds[(offset + index) * 2];
+        return (start >= 0 ? start : ~start);
+    }
+
+    /**
+     * @return The offset in {@link #getLine()} just after this token, including any closing quote.
+     */
+    public int end(int index) {
+        return (bounds[(offset + index) * 2 + 1]);
+    }
+
+    /**
+     * Gets everything from a token to the end of the line, exactly as typed (quotes and spacing included).
+     *
+     * @param index The index of the first token to include.
+     * @return The raw remainder of the line, without trailing spaces.
+     */
+    public String remainder(int index) {
+        return (line.substring(start(index), bounds[count * 2 - 1]));
+    }
+
+    /**
+     * Checks if a token's raw text equals the given string, ignoring case.
+     */
+    public boolean equalsIgnoreCase(int index, String string) {
+        int start = start(index);
+        int end = end(index);
+        return (end - start == string.length() && line.regionMatches(true, start, string, 0, string.length()));
+    }
+
+    /**
+     * Creates a view of this line without its first tokens. No copying is done.
+     *
+     * @param tokens The number of tokens to skip.
+     * @return The shifted view.
+     */
+    public CommandLine shift(int tokens) {
+        return (new CommandLine(line, bounds, Math.min(count, offset + tokens), count, trailingSpace));
+    }
+
+    /**
+     * @return The values of every token in this view, in a new array.
+     */
+    public String[] toArray() {
+        String[] tokens = new String[size()];
+
+        for (int index = 0; index < tokens.length; index++) {
+            tokens[index] = get(index);
+        }
+
+        return (tokens);
+    }
+
+    @Override
+    public String toString() {
+        return (isEmpty() ? "" : remainder(0));
+    }
+}
@@ -0,0 +1,218 @@
+package club.cloudcastgames.castlib.command;
+
+import com.google.common.base.Preconditions;
+import org.bukkit.Server;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.SimpleCommandMap;
+import org.bukkit.entity.Player;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Registers CastLib commands in the server's command map as real Bukkit commands, so the server's own lookup finds them
+ * and every command is looked up and dispatched once. There's one Bukkit command per first token of an alias
+ * ("team" for "team create" and "team invite"), which hands the whole line to the command tree.
+ * <p>
+ * CastLib commands take over labels other plugins registered, as they did when they were intercepted from chat,
+ * and the replaced commands are put back when CastLib's commands go away.
+ * The command map is kept in sync with the {@link CommandRegistry} whenever commands are registered or unregistered,
+ * which (like all command map changes) should happen on the main thread.
+ */
+public final class CommandMapBridge {
+    private static final MethodHandle KNOWN_COMMANDS;
+
+    private static SimpleCommandMap commandMap;
+    private static Map<String, org.bukkit.command.Command> knownCommands;
+    private static final Map<String, Label> labels = new HashMap<>();
+    // The commands our labels replaced.
+    private static final Map<String, org.bukkit.command.Command> replaced = new HashMap<>();
+    private static boolean initiated = false;
+
+    static {
+        try {
+            Field knownCommandsField = SimpleCommandMap.class.getDeclaredField("knownCommands");
+            knownCommandsField.setAccessible(true);
+            KNOWN_COMMANDS = MethodHandles.lookup().unreflectGetter(knownCommandsField);
+        } catch (ReflectiveOperationException ex) {
+            throw (new ExceptionInInitializerError(ex));
+        }
+    }
+
+    private CommandMapBridge() {}
+
+    /**
+     * Starts registering CastLib commands in a command map, starting with the ones already registered.
+     * This can only be called once, and is called automatically when CastLib enables.
+     *
+     * @param map The server's command map.
+     */
+    static synchronized void init(SimpleCommandMap map) throws Throwable {
+        Preconditions.checkState(!initiated);
+
+        commandMap = map;
+        knownCommands = getKnownCommands(map);
+        initiated = true;
+
+        sync(CastCommandHandler.getCommandTrie());
+    }
+
+    /**
+     * Takes every CastLib command out of the command map, and puts back the commands they replaced.
+     */
+    public static synchronized void shutdown() {
+        if (!initiated) {
+            return;
+        }
+
+        for (String name : new HashSet<>(labels.keySet())) {
+            unregister(name);
+        }
+    }
+
+    /**
+     * @return The server's command map.
+     */
+    static SimpleCommandMap getServerCommandMap(Server server) throws Throwable {
+        // CraftServer#getCommandMap isn't part of the Bukkit API.
+        MethodHandle getCommandMap = MethodHandles.publicLookup().findVirtual(server.getClass(), "getCommandMap", MethodType.methodType(SimpleCommandMap.class));
+        return ((SimpleCommandMap) getCommandMap.invoke(server));
+    }
+
+    /**
+     * @return The live map of every command's label to the command in a command map.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, org.bukkit.command.Command> getKnownCommands(SimpleCommandMap map) throws Throwable {
+        return ((Map<String, org.bukkit.command.Command>) KNOWN_COMMANDS.invoke(map));
+    }
+
+    /**
+     * @return If a Bukkit command is one of CastLib's.
+     */
+    static boolean isBridged(org.bukkit.command.Command command) {
+        return (command instanceof Label);
+    }
+
+    /**
+     * Updates the command map to the labels of a command tree: new labels are registered, and ones no longer in it unregistered.
+     */
+    static synchronized void sync(CommandTrie trie) {
+        if (!initiated) {
+            return;
+        }
+
+        Set<String> current = new HashSet<>();
+
+        for (CommandNode node : trie.getRoot().getChildren()) {
+            current.add(node.getName());
+
+            if (!labels.containsKey(node.getName())) {
+                register(node.getName());
+            }
+        }
+
+        for (String name : new HashSet<>(labels.keySet())) {
+            if (!current.contains(name)) {
+                unregister(name);
+            }
+        }
+    }
+
+    private static void register(String name) {
+        Label label = new Label(name);
+        org.bukkit.command.Command previous = knownCommands.put(name, label);
+
+        if (previous != null) {
+            replaced.put(name, previous);
+        }
+
+        labels.put(name, label);
+        label.register(commandMap);
+    }
+
+    private static void unregister(String name) {
+        Label label = labels.remove(name);
+        org.bukkit.command.Command previous = replaced.remove(name);
+
+        label.unregister(commandMap);
+
+        // Something else may have taken the label since.
+        if (knownCommands.get(name) == label) {
+            if (previous != null) {
+                knownCommands.put(name, previous);
+            } else {
+                knownCommands.remove(name);
+            }
+        }
+    }
+
+    /**
+     * A label of CastLib commands in the command map.
+     */
+    private static final class Label extends org.bukkit.command.Command {
+
+        private Label(String name) {
+            super(name);
+        }
+
+        @Override
+        public boolean execute(CommandSender sender, String label, String[] args) {
+            long start = System.nanoTime();
+            CommandLine line = toLine(label, args);
+
+            if (CastCommandHandler.dispatch(sender, line) == null && !CastCommandHandler.sendGroupHelp(sender, line) && !CastCommandHandler.sendSuggestion(sender, line)) {
+                sender.sendMessage("Unknown command. Type \"/help\" for help.");
+            }
+
+            if (sender instanceof Player) {
+                // Players' commands go ahead of queued ones, so the queue gets less time in the next tick.
+                CommandQueue.recordForeground(System.nanoTime() - start);
+            }
+
+            return (true);
+        }
+
+        @Override
+        public List<String> tabComplete(CommandSender sender, String alias, String[] args) {
+            if (!(sender instanceof Player)) {
+                return (Collections.emptyList());
+            }
+
+            Player player = (Player) sender;
+            CommandLine line = toLine(alias, args);
+            // Tab completions have no command yet; parameter types can still read the line from the context.
+            CommandContext context = new CommandContext(player, line, null, null, line, System.nanoTime());
+
+            try {
+                List<String> completions = context.call(() -> CommandCompleter.complete(player, line, CastCommandHandler.getCommandTrie()));
+                return (completions == null ? Collections.emptyList() : completions);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                return (Collections.emptyList());
+            }
+        }
+
+        @Override
+        public boolean testPermissionSilent(CommandSender sender) {
+            CommandNode node = CastCommandHandler.getCommandTrie().getRoot().getChild(getName());
+            return (node != null && node.canReach(sender));
+        }
+
+        /**
+         * Puts the line Bukkit split on spaces back together. Runs of spaces split into empty arguments,
+         * so the line comes back exactly as it was typed.
+         */
+        private static CommandLine toLine(String label, String[] args) {
+            return (CommandLine.parse(args.length == 0 ? label : label + " " + String.join(" ", args)));
+        }
+    }
+}
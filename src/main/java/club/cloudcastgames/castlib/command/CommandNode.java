@@ -0,0 +1,203 @@
+package club.cloudcastgames.castlib.command;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A node in the command tree: one token of a command alias.
+ * "team create" and "team invite" are the children "create" and "invite" of the node "team",
+ * which is a command of its own only if something is registered as "team".
+ * <p>
+ * Nodes are immutable, and are rebuilt whenever commands are registered or unregistered (see {@link CommandRegistry}).
+ */
+public final class CommandNode {
+    final String name;
+    final String[] keys;
+    final CommandNode[] children;
+    final CommandData command;
+    // If any command at or below this node needs no permission.
+    final boolean open;
+    // Every distinct permission used at or below this node (empty when open).
+    final String[] permissions;
+    // The PermissionCache ids of the permissions.
+    final int[] permissionIds;
+    // Set once while the tree is built, before it's published.
+    CommandNode parent;
+
+    CommandNode(String name, String[] keys, CommandNode[] children, CommandData command, boolean open, String[] permissions) {
+        this.name = name;
+        this.keys = keys;
+        this.children = children;
+        this.command = command;
+        this.open = open;
+        this.permissions = permissions;
+        this.permissionIds = new int[permissions.length];
+
+        for (int index = 0; index < permissions.length; index++) {
+            permissionIds[index] = PermissionCache.idOf(permissions[index]);
+        }
+
+        for (CommandNode child : children) {
+            child.parent = this;
+        }
+    }
+
+    /**
+     * @return The (lowercase) token of this node, or "" for the root.
+     */
+    public String getName() {
+        return (name);
+    }
+
+    /**
+     * @return The parent of this node, or null for the root.
+     */
+    public CommandNode getParent() {
+        return (parent);
+    }
+
+    /**
+     * @return The full alias of this node, e.g. "team create".
+     */
+    public String getPath() {
+        if (parent == null || parent.parent == null) {
+            return (name);
+        }
+
+        return (parent.getPath() + " " + name);
+    }
+
+    /**
+     * @return The command registered at exactly this node, or null if this node only groups subcommands.
+     */
+    public CommandData getCommand() {
+        return (command);
+    }
+
+    /**
+     * @return The children of this node, sorted by name.
+     */
+    public List<CommandNode> getChildren() {
+        return (Collections.unmodifiableList(Arrays.asList(children)));
+    }
+
+    /**
+     * Gets a child of this node.
+     *
+     * @param name The token of the child (case-insensitive).
+     * @return The child, or null if there isn't one.
+     */
+    public CommandNode getChild(String name) {
+        return (child(name, 0, name.length()));
+    }
+
+    /**
+     * Finds the deepest node reached by the first tokens of a line.
+     *
+     * @param line The tokenized command line
+     * @return The deepest node, or this node if the first token isn't a child.
+     */
+    public CommandNode descend(CommandLine line) {
+        CommandNode node = this;
+
+        for (int token = 0; token < line.size(); token++) {
+            CommandNode child = node.child(line.getLine(), line.start(token), line.end(token));
+
+            if (child == null) {
+                break;
+            }
+
+            node = child;
+        }
+
+        return (node);
+    }
+
+    /**
+     * @return If the sender can use any command at or below this node.
+     */
+    public boolean canReach(CommandSender sender) {
+        if (open) {
+            return (true);
+        }
+
+        for (int index = 0; index < permissions.length; index++) {
+            if (PermissionCache.canAccess(sender, permissions[index], permissionIds[index])) {
+                return (true);
+            }
+        }
+
+        return (false);
+    }
+
+    /**
+     * Builds the help for this node: the usage of every command at or below it which the sender can use.
+     * Only the branches the sender can reach are walked.
+     *
+     * @param sender The CommandSender asking for help.
+     * @return The help lines, in alphabetical order.
+     */
+    public List<String> getHelp(CommandSender sender) {
+        List<String> lines = new ArrayList<>();
+        appendHelp(sender, getPath(), lines);
+        return (lines);
+    }
+
+    private void appendHelp(CommandSender sender, String path, List<String> lines) {
+        if (command != null && !command.isHidden() && command.canAccess(sender)) {
+            String description = command.getDescription();
+            lines.add(ChatColor.RED + command.getUsageString(path) + (description.isEmpty() ? "" : ChatColor.GRAY + " - " + description));
+        }
+
+        for (CommandNode child : children) {
+            if (child.canReach(sender)) {
+                child.appendHelp(sender, path.isEmpty() ? child.name : path + " " + child.name, lines);
+            }
+        }
+    }
+
+    CommandNode child(String input, int start, int end) {
+        int low = 0;
+        int high = keys.length - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = CommandTrie.compare(keys[middle], input, start, end);
+
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return (children[middle]);
+            }
+        }
+
+        return (null);
+    }
+
+    /**
+     * @return The index of the first key which is not less than the given prefix.
+     */
+    int lowerBound(String input, int start, int end) {
+        int low = 0;
+        int high = keys.length;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (CommandTrie.compare(keys[middle], input, start, end) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return (low);
+    }
+}
@@ -0,0 +1,21 @@
+package club.cloudcastgames.castlib.command;
+
+import java.util.List;
+
+/**
+ * Provides already built commands to the command handler.
+ * The CastLib annotation processor generates one of these for every package containing @Command methods,
+ * with commands that are invoked directly instead of through reflection.
+ */
+public interface CommandProvider {
+
+    /**
+     * The resource listing the generated providers in a plugin jar, one class name per line.
+     */
+    String INDEX = "META-INF/castlib/commands.list";
+
+    /**
+     * @return The commands to register.
+     */
+    List<CommandData> provideCommands();
+}
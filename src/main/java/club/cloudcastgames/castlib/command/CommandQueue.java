@@ -0,0 +1,360 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.stats.CommandOutcome;
+import com.google.common.base.Preconditions;
+import org.bukkit.command.CommandSender;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs queued commands a few at a time, within a time budget every tick ("queue.tick-budget" in CastLib's config),
+ * so thousands of commands (such as automation running a reset) don't all run in the same tick.
+ * <p>
+ * Commands typed by players aren't queued, and the time they take comes out of the next tick's budget, so they always go first.
+ * Queued commands run by priority, then in the order they were queued. Lines are parsed when they're queued,
+ * so draining the queue only has to match them against the command tree and run them.
+ * With "queue.console" on, every command from the console (or RCON) is queued at {@link Priority#BULK} as well.
+ */
+public final class CommandQueue {
+    // How long to wait for the result of an async command before counting it as failed.
+    private static final long RESULT_TIMEOUT = TimeUnit.MINUTES.toNanos(5);
+
+    private static final Map<Priority, Queue<Entry>> queues = new EnumMap<>(Priority.class);
+    private static final AtomicInteger queued = new AtomicInteger();
+    // Commands which were started but haven't finished yet (async commands). Only used on the main thread.
+    private static final List<Entry> unfinished = new ArrayList<>();
+    private static final AtomicLong foregroundNanos = new AtomicLong();
+    private static long budget = TimeUnit.MILLISECONDS.toNanos(10);
+    private static boolean consoleMode = false;
+    private static Batch consoleBatch;
+    private static boolean initiated = false;
+
+    static {
+        for (Priority priority : Priority.values()) {
+            queues.put(priority, new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    private CommandQueue() {}
+
+    /**
+     * Reads the queue's config and starts draining it every tick.
+     * This can only be called once, and is called automatically when CastLib enables.
+     */
+    public static void init() {
+        Preconditions.checkState(!initiated);
+        initiated = true;
+
+        budget = TimeUnit.MILLISECONDS.toNanos(Math.max(1, CastLib.getInstance().getConfig().getLong("queue.tick-budget", 10L)));
+        consoleMode = CastLib.getInstance().getConfig().getBoolean("queue.console", false);
+
+        new BukkitRunnable() {
+
+            public void run() {
+                drain();
+            }
+
+        }.runTaskTimer(CastLib.getInstance(), 1L, 1L);
+
+        new BukkitRunnable() {
+
+            public void run() {
+                Batch batch = consoleBatch;
+
+                if (batch != null && !batch.isDone()) {
+                    CastLib.getInstance().getLogger().info("Command queue: " + batch.getCompleted() + "/" + batch.getTotal() + " done, " + batch.getFailed() + " failed.");
+                }
+            }
+
+        }.runTaskTimer(CastLib.getInstance(), 100L, 100L);
+    }
+
+    /**
+     * Logs how many queued commands won't run.
+     */
+    public static void shutdown() {
+        if (queued.get() > 0) {
+            CastLib.getInstance().getLogger().warning(queued.get() + " queued commands were never run.");
+        }
+    }
+
+    /**
+     * Queues commands.
+     *
+     * @param sender   The CommandSender to run the commands as.
+     * @param lines    The commands (with or without a prepended '/').
+     * @param priority The priority of the commands.
+     * @return The batch of the commands, to follow their progress.
+     */
+    public static Batch submit(CommandSender sender, List<String> lines, Priority priority) {
+        Batch batch = new Batch();
+        enqueue(batch, sender, lines, priority);
+        batch.seal();
+        return (batch);
+    }
+
+    /**
+     * Queues a command.
+     *
+     * @param sender   The CommandSender to run the command as.
+     * @param line     The command (with or without a prepended '/').
+     * @param priority The priority of the command.
+     * @return The batch of the command, to follow its progress.
+     */
+    public static Batch submit(CommandSender sender, String line, Priority priority) {
+        return (submit(sender, Collections.singletonList(line), priority));
+    }
+
+    /**
+     * @return The number of commands waiting to run.
+     */
+    public static int getQueued() {
+        return (queued.get());
+    }
+
+    /**
+     * @return If commands from the console are queued.
+     */
+    public static boolean isConsoleMode() {
+        return (consoleMode);
+    }
+
+    /**
+     * Turns queueing commands from the console on or off.
+     */
+    public static void setConsoleMode(boolean consoleMode) {
+        CommandQueue.consoleMode = consoleMode;
+    }
+
+    /**
+     * Queues a command from the console, as part of the console's current batch.
+     * A summary is logged once the batch has finished, and its progress every 5 seconds until then.
+     */
+    static synchronized void submitConsole(CommandSender sender, String line) {
+        Batch batch = consoleBatch;
+
+        if (batch == null || batch.isDone()) {
+            Batch started = batch = consoleBatch = new Batch();
+
+            batch.getCompletion().thenRun(() -> {
+                CastLib.getInstance().getLogger().info("Command queue finished: " + started.getTotal() + " commands, " + started.getFailed() + " failed.");
+
+                for (String failure : started.getFailures().subList(0, Math.min(5, started.getFailures().size()))) {
+                    CastLib.getInstance().getLogger().warning("  " + failure);
+                }
+            });
+        }
+
+        enqueue(batch, sender, Collections.singletonList(line), Priority.BULK);
+        // The console's batch stays open for more commands until it has run everything so far.
+        batch.seal();
+    }
+
+    /**
+     * Takes the time a command run outside of the queue took out of the queue's next budget.
+     */
+    static void recordForeground(long nanos) {
+        foregroundNanos.addAndGet(nanos);
+    }
+
+    private static void enqueue(Batch batch, CommandSender sender, List<String> lines, Priority priority) {
+        Queue<Entry> queue = queues.get(priority);
+
+        // Counted before any of them can be drained, so the batch can't look finished while it's still being queued.
+        batch.total.addAndGet(lines.size());
+
+        for (String line : lines) {
+            String command = line.startsWith("/") ? line.substring(1) : line;
+
+            queue.add(new Entry(batch, sender, command, CommandLine.parse(command)));
+            queued.incrementAndGet();
+        }
+    }
+
+    private static void drain() {
+        long start = System.nanoTime();
+
+        for (Iterator<Entry> iterator = unfinished.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            CommandOutcome outcome = entry.context.getOutcome();
+
+            if (outcome != null) {
+                entry.finish(outcome);
+                iterator.remove();
+            } else if (start - entry.started > RESULT_TIMEOUT) {
+                entry.batch.fail(entry.command, "no result after " + TimeUnit.NANOSECONDS.toMinutes(RESULT_TIMEOUT) + " minutes");
+                iterator.remove();
+            }
+        }
+
+        long allowed = budget - foregroundNanos.getAndSet(0);
+        boolean first = true;
+        Entry entry;
+
+        // At least one command runs every tick, however busy it was, so the queue always makes progress.
+        while ((first || System.nanoTime() - start < allowed) && (entry = poll()) != null) {
+            first = false;
+            run(entry);
+        }
+    }
+
+    private static Entry poll() {
+        for (Queue<Entry> queue : queues.values()) {
+            Entry entry = queue.poll();
+
+            if (entry != null) {
+                queued.decrementAndGet();
+                return (entry);
+            }
+        }
+
+        return (null);
+    }
+
+    private static void run(Entry entry) {
+        try {
+            CommandContext context = CastCommandHandler.dispatch(entry.sender, entry.line);
+
+            if (context == null) {
+                // Not a CastLib command, so it goes to Bukkit like any other command.
+                if (CastLib.getInstance().getServer().dispatchCommand(entry.sender, entry.command)) {
+                    entry.batch.succeed();
+                } else {
+                    entry.batch.fail(entry.command, "unknown command");
+                }
+            } else if (context.getOutcome() != null) {
+                entry.finish(context.getOutcome());
+            } else {
+                entry.context = context;
+                entry.started = System.nanoTime();
+                unfinished.add(entry);
+            }
+        } catch (Throwable ex) {
+            entry.batch.fail(entry.command, ex.toString());
+        }
+    }
+
+    /**
+     * The priority of queued commands. Higher priorities always run first.
+     */
+    public enum Priority {
+        /** For commands on behalf of players, which shouldn't wait behind bulk work. */
+        HIGH,
+        NORMAL,
+        /** For large streams of automated commands. */
+        BULK
+    }
+
+    /**
+     * Commands queued together, with their progress.
+     */
+    public static final class Batch {
+        // Failures kept for getFailures(); the rest are only counted.
+        private static final int MAX_FAILURES = 100;
+
+        private final AtomicInteger total = new AtomicInteger();
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+        private final CompletableFuture<Batch> completion = new CompletableFuture<>();
+
+        private Batch() {}
+
+        public int getTotal() {
+            return (total.get());
+        }
+
+        public int getSucceeded() {
+            return (succeeded.get());
+        }
+
+        public int getFailed() {
+            return (failed.get());
+        }
+
+        public int getCompleted() {
+            return (succeeded.get() + failed.get());
+        }
+
+        public boolean isDone() {
+            return (completion.isDone());
+        }
+
+        /**
+         * @return The first failures, as "command: reason".
+         */
+        public List<String> getFailures() {
+            synchronized (failures) {
+                return (new ArrayList<>(failures));
+            }
+        }
+
+        /**
+         * @return A future completed (on the main thread) once every command in the batch has finished.
+         */
+        public CompletableFuture<Batch> getCompletion() {
+            return (completion);
+        }
+
+        private void succeed() {
+            succeeded.incrementAndGet();
+            seal();
+        }
+
+        private void fail(String command, String reason) {
+            failed.incrementAndGet();
+
+            if (failures.size() < MAX_FAILURES) {
+                failures.add(command + ": " + reason);
+            }
+
+            seal();
+        }
+
+        /**
+         * Completes the batch if every command queued so far has finished.
+         */
+        private void seal() {
+            if (getCompleted() == total.get()) {
+                completion.complete(this);
+            }
+        }
+    }
+
+    private static final class Entry {
+        private final Batch batch;
+        private final CommandSender sender;
+        private final String command;
+        private final CommandLine line;
+        private CommandContext context;
+        private long started;
+
+        private Entry(Batch batch, CommandSender sender, String command, CommandLine line) {
+            this.batch = batch;
+            this.sender = sender;
+            this.command = command;
+            this.line = line;
+        }
+
+        private void finish(CommandOutcome outcome) {
+            if (outcome == CommandOutcome.SUCCESS) {
+                batch.succeed();
+            } else {
+                batch.fail(command, outcome.getKey());
+            }
+        }
+    }
+}
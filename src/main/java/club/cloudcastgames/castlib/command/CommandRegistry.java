@@ -0,0 +1,219 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.util.BKTree;
+import com.google.common.collect.ImmutableList;
+import lombok.Getter;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+import org.spigotmc.CustomTimingsHandler;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+/**
+ * Every registered command, published as immutable snapshots.
+ * <p>
+ * Readers (dispatch, tab completion, async commands) just read the current snapshot, without locking.
+ * Writers are serialized, and every registration or unregistration builds one new snapshot,
+ * so registering a whole class, package or plugin at once only sorts the commands and builds the trie once.
+ */
+public final class CommandRegistry {
+    private volatile Snapshot snapshot = new Snapshot(ImmutableList.of(), CommandTrie.EMPTY);
+    // Every alias and every group of subcommands ("team" for "team create"), for suggestions.
+    private final BKTree suggestions = new BKTree();
+    private volatile int maxAliasTokens;
+
+    /**
+     * @return The current snapshot. It never changes, so it can be used for as long as needed.
+     */
+    public Snapshot getSnapshot() {
+        return (snapshot);
+    }
+
+    /**
+     * @return Every registered command, longest name first.
+     */
+    public List<CommandData> getCommands() {
+        return (snapshot.getCommands());
+    }
+
+    /**
+     * @return The trie of every registered command's aliases.
+     */
+    public CommandTrie getTrie() {
+        return (snapshot.getTrie());
+    }
+
+    /**
+     * Registers commands in one batch.
+     *
+     * @param owner    The plugin the commands belong to, or null if they shouldn't be unregistered with a plugin.
+     * @param commands The commands to register.
+     */
+    public synchronized void register(Plugin owner, Collection<CommandData> commands) {
+        if (commands.isEmpty()) {
+            return;
+        }
+
+        Snapshot current = snapshot;
+        // Aliases claimed by commands earlier in this batch.
+        Map<String, CommandData> claimed = new HashMap<>();
+
+        for (CommandData commandData : commands) {
+            commandData.setOwner(owner);
+
+            if (commandData.isAsync() && !AsyncCommandExecutor.getPools().containsKey(commandData.getAsyncPool())) {
+                CastLib.getInstance().getLogger().warning("Command '" + commandData.getName() + "' uses async pool '" + commandData.getAsyncPool() + "', which isn't configured; the default pool will be used.");
+            }
+
+            for (String alias : commandData.getNames()) {
+                CommandData existing = claimed.get(alias.toLowerCase());
+
+                if (existing == null) {
+                    existing = current.getTrie().get(alias);
+                }
+
+                if (existing != null) {
+                    // Same tie-break as the sort below: the longer name wins, otherwise whoever registered first.
+                    CommandData used = commandData.getName().length() > existing.getName().length() ? commandData : existing;
+                    CastLib.getInstance().getLogger().warning("Alias '" + alias + "' is ambiguous between '" + existing.getMethodName() + "' and '" + commandData.getMethodName() + "'; '" + used.getMethodName() + "' will be used.");
+                    claimed.put(alias.toLowerCase(), used);
+                } else {
+                    claimed.put(alias.toLowerCase(), commandData);
+                }
+            }
+        }
+
+        List<CommandData> updated = new ArrayList<>(current.getCommands());
+        updated.addAll(commands);
+        publish(updated);
+
+        for (CommandData commandData : commands) {
+            for (String alias : commandData.getNames()) {
+                List<String> paths = paths(alias);
+                paths.forEach(suggestions::add);
+                maxAliasTokens = Math.max(maxAliasTokens, paths.size());
+            }
+        }
+    }
+
+    /**
+     * Unregisters every command a plugin owns, and removes their timings handlers.
+     *
+     * @param owner The plugin.
+     * @return The commands which were unregistered.
+     */
+    public synchronized List<CommandData> unregister(Plugin owner) {
+        if (owner == null) {
+            return (Collections.emptyList());
+        }
+
+        List<CommandData> kept = new ArrayList<>();
+        List<CommandData> removed = new ArrayList<>();
+
+        for (CommandData commandData : snapshot.getCommands()) {
+            (commandData.getOwner() == owner ? removed : kept).add(commandData);
+        }
+
+        if (!removed.isEmpty()) {
+            publish(kept);
+            removed.forEach(CommandRegistry::removeTimings);
+
+            for (CommandData commandData : removed) {
+                for (String alias : commandData.getNames()) {
+                    for (String path : paths(alias)) {
+                        // Other commands may still use the alias, or have subcommands under it.
+                        if (snapshot.getTrie().getNode(path) == null) {
+                            suggestions.remove(path);
+                        }
+                    }
+                }
+            }
+        }
+
+        return (removed);
+    }
+
+    /**
+     * Suggests what a sender probably meant to type, for a line which no command matched.
+     * The aliases and groups of subcommands closest to the start of the line are considered,
+     * longest first, and only ones the sender can use are suggested.
+     *
+     * @param sender The CommandSender who typed the line.
+     * @param line   The tokenized command line (without a prepended '/')
+     * @return The alias or group of subcommands (e.g. "team create" or "team"), or null if nothing is close enough.
+     */
+    public String suggest(CommandSender sender, CommandLine line) {
+        CommandTrie trie = snapshot.getTrie();
+
+        for (int tokens = Math.min(line.size(), maxAliasTokens); tokens > 0; tokens--) {
+            String typed = line.getLine().substring(line.start(0), line.end(tokens - 1));
+
+            for (String candidate : suggestions.search(typed, BKTree.tolerance(typed.length()), 5)) {
+                CommandNode node = trie.getNode(candidate);
+
+                if (node != null && node.canReach(sender) && (node.children.length > 0 || !node.command.isHidden())) {
+                    return (candidate);
+                }
+            }
+        }
+
+        return (null);
+    }
+
+    /**
+     * @return Every path leading to an alias, e.g. "team" and "team create" for "team create".
+     */
+    private static List<String> paths(String alias) {
+        List<String> paths = new ArrayList<>();
+        StringBuilder path = new StringBuilder();
+
+        for (String token : alias.toLowerCase().split(" ")) {
+            if (!token.isEmpty()) {
+                path.append(path.length() == 0 ? "" : " ").append(token);
+                paths.add(path.toString());
+            }
+        }
+
+        return (paths);
+    }
+
+    private void publish(List<CommandData> commands) {
+        // We sort here so to ensure that our commands are matched properly.
+        // The trie gives ambiguous aliases to whichever command comes first in this list,
+        // which keeps the old first-match-by-length behaviour. The sort is stable, so earlier registrations stay first.
+        commands.sort((o1, o2) -> (o2.getName().length() - o1.getName().length()));
+
+        List<CommandData> immutable = ImmutableList.copyOf(commands);
+        snapshot = new Snapshot(immutable, CommandTrie.build(immutable));
+        CommandMapBridge.sync(snapshot.getTrie());
+    }
+
+    /**
+     * Every CustomTimingsHandler is kept in a static list by Spigot, and never removed,
+     * so we take unregistered commands' handlers out ourselves.
+     */
+    private static void removeTimings(CommandData commandData) {
+        try {
+            Field handlersField = CustomTimingsHandler.class.getDeclaredField("HANDLERS");
+            handlersField.setAccessible(true);
+            ((Collection<?>) handlersField.get(null)).remove(commandData.getTimingsHandler());
+        } catch (Exception ex) {
+            // Only a small leak, and only on servers whose CustomTimingsHandler is different.
+        }
+    }
+
+    /**
+     * An immutable view of the registered commands.
+     */
+    public static final class Snapshot {
+        @Getter private final List<CommandData> commands;
+        @Getter private final CommandTrie trie;
+
+        private Snapshot(List<CommandData> commands, CommandTrie trie) {
+            this.commands = commands;
+            this.trie = trie;
+        }
+    }
+}
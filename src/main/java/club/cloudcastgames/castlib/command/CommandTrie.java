@@ -0,0 +1,228 @@
+package club.cloudcastgames.castlib.command;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An immutable, case-insensitive token trie over every registered command alias: the command tree (see {@link CommandNode}).
+ * Multi-word aliases ("team create") are stored one token per level, so a tokenized
+ * command line can be matched in a single pass without lowercasing or copying it,
+ * in time proportional to the number of tokens rather than the number of commands.
+ */
+public final class CommandTrie {
+    public static final CommandTrie EMPTY = new CommandTrie(new Builder().freeze(""));
+
+    private final CommandNode root;
+
+    private CommandTrie(CommandNode root) {
+        this.root = root;
+    }
+
+    /**
+     * Builds a trie from the given commands.
+     * When two commands share an alias, the one appearing first in the list claims it,
+     * which matches the first-match behaviour of the length-sorted command list.
+     *
+     * @param commands The commands to index, sorted by name length (longest first).
+     * @return The built trie.
+     */
+    public static CommandTrie build(List<CommandData> commands) {
+        Builder root = new Builder();
+
+        for (CommandData commandData : commands) {
+            for (String alias : commandData.getNames()) {
+                Builder node = root;
+
+                for (String token : alias.split(" ")) {
+                    if (!token.isEmpty()) {
+                        node = node.children.computeIfAbsent(lower(token), key -> new Builder());
+                    }
+                }
+
+                if (node != root && node.command == null) {
+                    node.command = commandData;
+                }
+            }
+        }
+
+        return (new CommandTrie(root.freeze("")));
+    }
+
+    /**
+     * @return The root of the command tree, whose children are the first token of every alias.
+     */
+    public CommandNode getRoot() {
+        return (root);
+    }
+
+    /**
+     * Finds the command registered under exactly this alias.
+     *
+     * @param alias The alias to look up (case-insensitive)
+     * @return The command which owns the alias, or null if none does.
+     */
+    public CommandData get(String alias) {
+        CommandNode node = getNode(alias);
+        return (node == null ? null : node.command);
+    }
+
+    /**
+     * Finds the node of exactly this alias, whether or not it's a command itself.
+     *
+     * @param alias The alias to look up (case-insensitive), e.g. "team" or "team create".
+     * @return The node, or null if no alias starts with it.
+     */
+    public CommandNode getNode(String alias) {
+        CommandNode node = root;
+        int position = 0;
+
+        while (node != null && position < alias.length()) {
+            int end = alias.indexOf(' ', position);
+
+            if (end == -1) {
+                end = alias.length();
+            }
+
+            if (end > position) {
+                node = node.child(alias, position, end);
+            }
+
+            position = end + 1;
+        }
+
+        return (node == root ? null : node);
+    }
+
+    /**
+     * Matches the longest alias prefix of a command line, one token at a time.
+     * A command without parameters only matches when nothing follows its alias,
+     * unless no shorter alias on the path can take the remaining input.
+     *
+     * @param line The tokenized command line
+     * @return The match, or null if no alias prefixes the line.
+     */
+    public Match match(CommandLine line) {
+        String input = line.getLine();
+        CommandNode node = root;
+        CommandNode best = null;
+        int bestTokens = 0;
+        CommandNode fallback = null;
+        int fallbackTokens = 0;
+
+        for (int token = 0; token < line.size(); token++) {
+            node = node.child(input, line.start(token), line.end(token));
+
+            if (node == null) {
+                break;
+            }
+
+            if (node.command != null) {
+                if (token + 1 == line.size() || !node.command.getParameters().isEmpty()) {
+                    best = node;
+                    bestTokens = token + 1;
+                } else {
+                    fallback = node;
+                    fallbackTokens = token + 1;
+                }
+            }
+        }
+
+        if (best != null) {
+            return (new Match(best.command, bestTokens));
+        }
+
+        return (fallback == null ? null : new Match(fallback.command, fallbackTokens));
+    }
+
+    private static String lower(String token) {
+        char[] chars = new char[token.length()];
+
+        for (int index = 0; index < chars.length; index++) {
+            chars[index] = Character.toLowerCase(token.charAt(index));
+        }
+
+        return (new String(chars));
+    }
+
+    /**
+     * Compares a lowercased key against a region of the input, lowercasing the input as it goes.
+     * The ordering is the same as String#compareTo on the lowercased strings.
+     */
+    static int compare(String key, String input, int start, int end) {
+        int length = end - start;
+        int limit = Math.min(key.length(), length);
+
+        for (int index = 0; index < limit; index++) {
+            char keyChar = key.charAt(index);
+            char inputChar = Character.toLowerCase(input.charAt(start + index));
+
+            if (keyChar != inputChar) {
+                return (keyChar - inputChar);
+            }
+        }
+
+        return (key.length() - length);
+    }
+
+    /**
+     * @return If the lowercased key starts with the prefix, ignoring the prefix's case.
+     */
+    static boolean startsWith(String key, String prefix) {
+        return (key.regionMatches(true, 0, prefix, 0, prefix.length()));
+    }
+
+    /**
+     * The result of matching a command line against the trie.
+     */
+    public static final class Match {
+        private final CommandData command;
+        private final int tokens;
+
+        Match(CommandData command, int tokens) {
+            this.command = command;
+            this.tokens = tokens;
+        }
+
+        public CommandData getCommand() {
+            return (command);
+        }
+
+        /**
+         * @return The number of tokens the matched alias took up.
+         */
+        public int getTokens() {
+            return (tokens);
+        }
+    }
+
+    private static final class Builder {
+        private final Map<String, Builder> children = new TreeMap<>();
+        private CommandData command;
+
+        private CommandNode freeze(String name) {
+            String[] keys = new String[children.size()];
+            CommandNode[] nodes = new CommandNode[children.size()];
+            Set<String> permissions = new LinkedHashSet<>();
+            boolean open = command != null && command.getPermission().isEmpty();
+            int index = 0;
+
+            if (command != null && !open) {
+                permissions.add(command.getPermission());
+            }
+
+            for (Map.Entry<String, Builder> entry : children.entrySet()) {
+                keys[index] = entry.getKey();
+                nodes[index] = entry.getValue().freeze(entry.getKey());
+                open |= nodes[index].open;
+                Collections.addAll(permissions, nodes[index].permissions);
+                index++;
+            }
+
+            return (new CommandNode(name, keys, nodes, command, open, open ? new String[0] : permissions.toArray(new String[0])));
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.CastLib;
+import com.google.common.base.Preconditions;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches for sync commands which hold up the main thread, and reports what they were doing.
+ * <p>
+ * The main thread marks when it starts and stops running a command (one volatile write each).
+ * A monitor thread checks the mark every "watchdog.sample-interval" milliseconds; once a command has run for longer than
+ * "watchdog.threshold" milliseconds, it samples the main thread's stack until the command ends. The report names
+ * the command, the sender and the frames the samples were in most often; each sample counts the innermost frame outside
+ * the JDK, so a command waiting on I/O points at its own call rather than at a socket read. It's logged at most once per command
+ * every "watchdog.report-interval" seconds. Set the threshold to 0 to turn the watchdog off.
+ */
+public final class CommandWatchdog {
+    // The most frames shown in a report.
+    private static final int REPORTED_FRAMES = 5;
+    // Commands still running after this long are reported without waiting for them to end.
+    private static final long MAX_SAMPLING = TimeUnit.SECONDS.toNanos(5);
+    // Frames in these packages are the JDK's, and not counted when there's a frame of the command's own.
+    private static final String[] JDK_PACKAGES = { "java.", "javax.", "sun.", "com.sun.", "jdk." };
+
+    private static Thread mainThread;
+    private static Thread monitor;
+    // Written by the main thread before it publishes a run through the volatile running.
+    private static CommandData command;
+    private static CommandSender sender;
+    private static long startNanos;
+    private static long runs;
+    // The number of the run on the main thread, or 0 when no command is running.
+    private static volatile long running;
+    private static boolean initiated = false;
+
+    private CommandWatchdog() {}
+
+    /**
+     * Starts the watchdog, as configured in the "watchdog" section of CastLib's config.
+     * This can only be called once, and is called automatically (on the main thread) when CastLib enables.
+     */
+    public static void init() {
+        Preconditions.checkState(!initiated);
+        initiated = true;
+
+        long threshold = TimeUnit.MILLISECONDS.toNanos(CastLib.getInstance().getConfig().getLong("watchdog.threshold", 50L));
+        long sampleInterval = Math.max(1, CastLib.getInstance().getConfig().getLong("watchdog.sample-interval", 5L));
+        long reportInterval = TimeUnit.SECONDS.toNanos(CastLib.getInstance().getConfig().getLong("watchdog.report-interval", 60L));
+
+        if (threshold <= 0) {
+            return;
+        }
+
+        mainThread = Thread.currentThread();
+
+        monitor = new Thread(new Monitor(threshold, sampleInterval, reportInterval), "CastLib Command Watchdog");
+        monitor.setDaemon(true);
+        monitor.start();
+    }
+
+    /**
+     * Stops the monitor thread, so nothing is sampled or reported once CastLib is disabled.
+     */
+    public static void shutdown() {
+        if (monitor == null) {
+            return;
+        }
+
+        monitor.interrupt();
+
+        try {
+            monitor.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        monitor = null;
+        // Commands no longer count as running on the main thread.
+        mainThread = null;
+        command = null;
+        sender = null;
+    }
+
+    /**
+     * Marks a command as running, if this is the main thread and no other command is running on it already.
+     *
+     * @return If the command was marked, and {@link #exit()} has to be called when it ends.
+     */
+    static boolean enter(CommandData command, CommandSender sender) {
+        if (Thread.currentThread() != mainThread || running != 0) {
+            return (false);
+        }
+
+        CommandWatchdog.command = command;
+        CommandWatchdog.sender = sender;
+        CommandWatchdog.startNanos = System.nanoTime();
+        running = ++runs;
+        return (true);
+    }
+
+    /**
+     * Marks the command as ended.
+     */
+    static void exit() {
+        // So the sender isn't kept around until the next command.
+        command = null;
+        sender = null;
+        running = 0;
+    }
+
+    private static final class Monitor implements Runnable {
+        private final long threshold;
+        private final long sampleInterval;
+        private final long reportInterval;
+        // By command name, so commands which are unregistered (and their plugin's classes) aren't kept.
+        private final Map<String, Long> lastReports = new HashMap<>();
+        // The run being sampled, and what's been sampled so far.
+        private long sampledRun;
+        private CommandData sampledCommand;
+        private CommandSender sampledSender;
+        private long sampledStart;
+        private final Map<StackTraceElement, Integer> frames = new HashMap<>();
+        private int samples;
+
+        private Monitor(long threshold, long sampleInterval, long reportInterval) {
+            this.threshold = threshold;
+            this.sampleInterval = sampleInterval;
+            this.reportInterval = reportInterval;
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                try {
+                    Thread.sleep(sampleInterval);
+                } catch (InterruptedException ex) {
+                    // Shut down; nothing is kept for the next start.
+                    lastReports.clear();
+                    sampledCommand = null;
+                    sampledSender = null;
+                    frames.clear();
+                    return;
+                }
+
+                try {
+                    check();
+                } catch (Exception ex) {
+                    // The watchdog mustn't die over one bad sample.
+                    ex.printStackTrace();
+                }
+            }
+        }
+
+        private void check() {
+            long run = running;
+
+            if (run != sampledRun && sampledRun != 0) {
+                // The sampled command has ended.
+                report(false);
+            }
+
+            if (run == 0 || run == sampledRun && sampledCommand == null) {
+                return;
+            }
+
+            long now = System.nanoTime();
+
+            if (run != sampledRun) {
+                CommandData runCommand = command;
+                CommandSender runSender = sender;
+                long runStart = startNanos;
+
+                // The main thread moved on while we were reading.
+                if (running != run) {
+                    return;
+                }
+
+                if (now - runStart < threshold) {
+                    // Not slow (yet); looked at again next time.
+                    return;
+                }
+
+                sampledRun = run;
+                sampledCommand = runCommand;
+                sampledSender = runSender;
+                sampledStart = runStart;
+            }
+
+            StackTraceElement[] stack = mainThread.getStackTrace();
+
+            // The command may have ended while the stack was taken, in which case the sample is of something else.
+            if (running != run) {
+                return;
+            }
+
+            if (stack.length > 0) {
+                frames.merge(ownFrame(stack), 1, Integer::sum);
+                samples++;
+            }
+
+            if (now - sampledStart > MAX_SAMPLING) {
+                report(true);
+            }
+        }
+
+        /**
+         * @return The innermost frame outside the JDK, or the innermost frame if they're all the JDK's.
+         */
+        private StackTraceElement ownFrame(StackTraceElement[] stack) {
+            for (StackTraceElement frame : stack) {
+                if (!isJdk(frame.getClassName())) {
+                    return (frame);
+                }
+            }
+
+            return (stack[0]);
+        }
+
+        private boolean isJdk(String className) {
+            for (String jdkPackage : JDK_PACKAGES) {
+                if (className.startsWith(jdkPackage)) {
+                    return (true);
+                }
+            }
+
+            return (false);
+        }
+
+        /**
+         * Logs the report of the sampled command, unless one was logged for it too recently, and stops sampling it.
+         * A command which is still running keeps its run number, so it isn't sampled again.
+         */
+        private void report(boolean stillRunning) {
+            CommandData reported = sampledCommand;
+            long now = System.nanoTime();
+            Long lastReport = reported == null ? null : lastReports.get(reported.getName());
+
+            if (reported != null && samples > 0 && (lastReport == null || now - lastReport > reportInterval)) {
+                lastReports.put(reported.getName(), now);
+
+                List<Map.Entry<StackTraceElement, Integer>> hottest = new ArrayList<>(frames.entrySet());
+                hottest.sort((first, second) -> Integer.compare(second.getValue(), first.getValue()));
+
+                StringBuilder report = new StringBuilder();
+                String name = sampledSender == null ? "?" : sampledSender.getName();
+
+                report.append("Command /").append(reported.getName()).append(" (run by ").append(name).append(") ")
+                        .append(stillRunning ? "has been holding up the main thread for " : "held up the main thread for ")
+                        .append(TimeUnit.NANOSECONDS.toMillis(now - sampledStart)).append("ms. Hottest frames (of ").append(samples).append(" samples):");
+
+                for (int index = 0; index < Math.min(REPORTED_FRAMES, hottest.size()); index++) {
+                    Map.Entry<StackTraceElement, Integer> frame = hottest.get(index);
+                    report.append("\n  ").append(String.format(Locale.ROOT, "%3d%%", frame.getValue() * 100 / samples)).append(" ").append(frame.getKey());
+                }
+
+                report.append("\nIf it waits on I/O or other slow work, consider @Command(async = true).");
+                CastLib.getInstance().getLogger().warning(report.toString());
+            }
+
+            if (!stillRunning) {
+                sampledRun = 0;
+            }
+
+            sampledCommand = null;
+            sampledSender = null;
+            frames.clear();
+            samples = 0;
+        }
+    }
+}
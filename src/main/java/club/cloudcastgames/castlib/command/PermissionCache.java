@@ -0,0 +1,168 @@
+package club.cloudcastgames.castlib.command;
+
+import club.cloudcastgames.castlib.CastLib;
+import com.google.common.base.Preconditions;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Caches players' permission checks for command permissions, so dispatch and tab completion
+ * (which checks every command the player could be typing, on every keypress) don't have to ask the permissions plugin every time.
+ * <p>
+ * Every distinct command permission gets a small id, and each player has a bitset of the permissions
+ * which have been checked and a bitset of the ones they have. A player's decisions are forgotten when they join,
+ * change worlds, or when {@link #invalidate(Player)} is called, and after "permissions.cache-expiry" milliseconds at the latest.
+ * Plugins which change permissions at runtime should call {@link #invalidate(Player)}.
+ * <p>
+ * The special "op", "console" and "" permissions are never cached, and non-players can use every command,
+ * exactly as before.
+ */
+public final class PermissionCache implements Listener {
+    // The id of permissions which aren't cached.
+    static final int UNCACHED = -1;
+
+    private static final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final ConcurrentMap<UUID, Decisions> players = new ConcurrentHashMap<>();
+    private static long expiry = TimeUnit.SECONDS.toNanos(30);
+    private static boolean initiated = false;
+
+    private PermissionCache() {}
+
+    /**
+     * Reads the cache expiry from the config and starts listening for invalidating events.
+     * This can only be called once, and is called automatically when CastLib enables.
+     */
+    public static void init() {
+        Preconditions.checkState(!initiated);
+        initiated = true;
+
+        expiry = TimeUnit.MILLISECONDS.toNanos(CastLib.getInstance().getConfig().getLong("permissions.cache-expiry", 30_000L));
+        CastLib.getInstance().getServer().getPluginManager().registerEvents(new PermissionCache(), CastLib.getInstance());
+    }
+
+    /**
+     * Checks if a sender can use commands with a permission.
+     *
+     * @param sender     The CommandSender. Non-players can use every command.
+     * @param permission The command's permission ("op", "console" or "" work as in {@link Command#permission()}).
+     * @return If the sender can use commands with the permission.
+     */
+    public static boolean canAccess(CommandSender sender, String permission) {
+        return (canAccess(sender, permission, idOf(permission)));
+    }
+
+    static boolean canAccess(CommandSender sender, String permission, int id) {
+        if (!(sender instanceof Player)) return (true);
+
+        switch (permission) {
+            case "op":
+                return (sender.isOp());
+            case "console":
+                return (sender instanceof ConsoleCommandSender);
+            case "":
+                return (true);
+            default:
+                return (hasPermission((Player) sender, permission, id));
+        }
+    }
+
+    /**
+     * Forgets a player's cached decisions, for when their permissions change.
+     *
+     * @param player The player.
+     */
+    public static void invalidate(Player player) {
+        players.remove(player.getUniqueId());
+    }
+
+    /**
+     * Forgets every player's cached decisions, for when permissions change for a whole group.
+     */
+    public static void invalidateAll() {
+        players.clear();
+    }
+
+    /**
+     * @return The id of a permission, or {@link #UNCACHED} if it's one of the special permissions.
+     * Ids are never reused, so they stay valid for as long as the server runs.
+     */
+    static int idOf(String permission) {
+        switch (permission) {
+            case "op":
+            case "console":
+            case "":
+                return (UNCACHED);
+            default:
+                Integer id = ids.get(permission);
+                return (id != null ? id : ids.computeIfAbsent(permission, key -> nextId.getAndIncrement()));
+        }
+    }
+
+    private static boolean hasPermission(Player player, String permission, int id) {
+        if (id == UNCACHED) {
+            return (player.hasPermission(permission));
+        }
+
+        long now = System.nanoTime();
+        Decisions decisions = players.get(player.getUniqueId());
+
+        if (decisions == null || (expiry > 0 && now - decisions.created > expiry)) {
+            // Players who already left aren't cached, so a late check can't leave their entry behind.
+            if (!player.isOnline()) {
+                return (player.hasPermission(permission));
+            }
+
+            decisions = new Decisions(now);
+            players.put(player.getUniqueId(), decisions);
+        }
+
+        synchronized (decisions) {
+            if (!decisions.known.get(id)) {
+                decisions.granted.set(id, player.hasPermission(permission));
+                decisions.known.set(id);
+            }
+
+            return (decisions.granted.get(id));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onJoin(PlayerJoinEvent event) {
+        invalidate(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onWorldChange(PlayerChangedWorldEvent event) {
+        invalidate(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        invalidate(event.getPlayer());
+    }
+
+    private static final class Decisions {
+        private final long created;
+        private final BitSet known = new BitSet();
+        private final BitSet granted = new BitSet();
+
+        private Decisions(long created) {
+            this.created = created;
+        }
+    }
+}
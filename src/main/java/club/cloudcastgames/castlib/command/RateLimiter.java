@@ -0,0 +1,207 @@
+package club.cloudcastgames.castlib.command;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Enforces a command's cooldown and rate limits (see {@link Command#cooldown()}, {@link Command#rateLimit()}
+ * and {@link Command#globalRateLimit()}).
+ * <p>
+ * Each limit is a token bucket kept as a single timestamp (the generic cell rate algorithm), updated with compare-and-set,
+ * so checking a limit never locks and is safe from any thread. A sender's state is removed once their bucket is full again,
+ * so senders who stop using a command stop costing memory.
+ * <p>
+ * Only players are limited, and players with {@link #BYPASS_PERMISSION} aren't (checked through the {@link PermissionCache}).
+ */
+public final class RateLimiter {
+    public static final String BYPASS_PERMISSION = "castlib.ratelimit.bypass";
+    private static final int BYPASS_PERMISSION_ID = PermissionCache.idOf(BYPASS_PERMISSION);
+
+    private final Limit cooldown;
+    private final Limit rate;
+    private final Limit global;
+
+    private RateLimiter(Limit cooldown, Limit rate, Limit global) {
+        this.cooldown = cooldown;
+        this.rate = rate;
+        this.global = global;
+    }
+
+    /**
+     * Creates the rate limiter for a command.
+     *
+     * @param cooldown        The time between uses by the same sender, in milliseconds, or 0 for none.
+     * @param rateLimit       The uses allowed per sender every ratePeriod, or 0 for no limit.
+     * @param globalRateLimit The uses allowed by everyone together every ratePeriod, or 0 for no limit.
+     * @param ratePeriod      The period of the rate limits, in milliseconds.
+     * @return The rate limiter, or null if the command isn't limited at all.
+     */
+    public static RateLimiter of(long cooldown, int rateLimit, int globalRateLimit, long ratePeriod) {
+        if (cooldown <= 0 && rateLimit <= 0 && globalRateLimit <= 0) {
+            return (null);
+        }
+
+        long period = TimeUnit.MILLISECONDS.toNanos(Math.max(1, ratePeriod));
+
+        return (new RateLimiter(
+                cooldown > 0 ? new Limit(TimeUnit.MILLISECONDS.toNanos(cooldown), 1, true) : null,
+                rateLimit > 0 ? new Limit(period / rateLimit, rateLimit, true) : null,
+                globalRateLimit > 0 ? new Limit(period / globalRateLimit, globalRateLimit, false) : null));
+    }
+
+    /**
+     * Takes a use of the command for a sender, if every limit allows it.
+     *
+     * @param sender The CommandSender executing the command.
+     * @return 0 if the sender can use the command (and the use has been counted),
+     * otherwise how long (in nanoseconds) they have to wait before trying again.
+     */
+    public long tryAcquire(CommandSender sender) {
+        if (!(sender instanceof Player) || PermissionCache.canAccess(sender, BYPASS_PERMISSION, BYPASS_PERMISSION_ID)) {
+            return (0);
+        }
+
+        UUID uuid = ((Player) sender).getUniqueId();
+        long now = System.nanoTime();
+        // Check every limit first, so most uses which would be stopped don't take anything.
+        long wait = Math.max(waitTime(cooldown, uuid, now), Math.max(waitTime(rate, uuid, now), waitTime(global, uuid, now)));
+
+        if (wait > 0) {
+            return (wait);
+        }
+
+        // Another sender may take the last global token in between, so the limits are taken one by one
+        // (the shared one first, as it's the likeliest to run out), and given back if a later one stops the use.
+        wait = acquire(global, uuid, now);
+
+        if (wait > 0) {
+            return (wait);
+        }
+
+        wait = acquire(cooldown, uuid, now);
+
+        if (wait > 0) {
+            release(global, uuid);
+            return (wait);
+        }
+
+        wait = acquire(rate, uuid, now);
+
+        if (wait > 0) {
+            release(cooldown, uuid);
+            release(global, uuid);
+        }
+
+        return (wait);
+    }
+
+    private static long waitTime(Limit limit, UUID uuid, long now) {
+        return (limit == null ? 0 : limit.waitTime(uuid, now));
+    }
+
+    private static long acquire(Limit limit, UUID uuid, long now) {
+        return (limit == null ? 0 : limit.acquire(uuid, now));
+    }
+
+    private static void release(Limit limit, UUID uuid) {
+        if (limit != null) {
+            limit.release(uuid);
+        }
+    }
+
+    /**
+     * One token bucket, either per sender or shared by everyone.
+     * The state is the "theoretical arrival time": the time at which the bucket will be full again.
+     */
+    private static final class Limit {
+        // Marks state which has been removed from the map; whoever sees it looks the state up again.
+        private static final long REMOVED = Long.MIN_VALUE;
+        private static final long EMPTY = Long.MIN_VALUE + 1;
+
+        private final long interval;
+        private final long tolerance;
+        private final ConcurrentMap<UUID, AtomicLong> senders;
+        private final AtomicLong shared;
+        private volatile int sweepAt = 64;
+
+        private Limit(long interval, int burst, boolean perSender) {
+            this.interval = Math.max(1, interval);
+            this.tolerance = this.interval * (burst - 1);
+            this.senders = perSender ? new ConcurrentHashMap<>() : null;
+            this.shared = perSender ? null : new AtomicLong(EMPTY);
+        }
+
+        private long waitTime(UUID uuid, long now) {
+            AtomicLong state = senders == null ? shared : senders.get(uuid);
+            long stored = state == null ? EMPTY : state.get();
+
+            return (stored == REMOVED ? 0 : Math.max(0, Math.max(stored, now) - tolerance - now));
+        }
+
+        private long acquire(UUID uuid, long now) {
+            while (true) {
+                AtomicLong state = senders == null ? shared : senders.computeIfAbsent(uuid, key -> new AtomicLong(EMPTY));
+                long stored = state.get();
+
+                if (stored == REMOVED) {
+                    continue;
+                }
+
+                long arrival = Math.max(stored, now);
+                long wait = arrival - tolerance - now;
+
+                if (wait > 0) {
+                    return (wait);
+                }
+
+                if (state.compareAndSet(stored, arrival + interval)) {
+                    if (senders != null && senders.size() >= sweepAt) {
+                        sweep(now);
+                    }
+
+                    return (0);
+                }
+            }
+        }
+
+        /**
+         * Gives back a use taken with {@link #acquire(UUID, long)}.
+         */
+        private void release(UUID uuid) {
+            AtomicLong state = senders == null ? shared : senders.get(uuid);
+
+            while (state != null) {
+                long stored = state.get();
+
+                // Swept since, which only happens once the bucket is full again anyway.
+                if (stored == REMOVED || state.compareAndSet(stored, stored - interval)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Removes the state of every sender whose bucket is full again, which is the same as having no state.
+         * This runs whenever the map has doubled since the last sweep, so it costs O(1) per use on average.
+         */
+        private void sweep(long now) {
+            for (Map.Entry<UUID, AtomicLong> entry : senders.entrySet()) {
+                AtomicLong state = entry.getValue();
+                long stored = state.get();
+
+                if (stored != REMOVED && stored <= now && state.compareAndSet(stored, REMOVED)) {
+                    senders.remove(entry.getKey(), state);
+                }
+            }
+
+            sweepAt = Math.max(64, senders.size() * 2);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package club.cloudcastgames.castlib.command.param;
+
+import org.bukkit.command.CommandSender;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A parameter type which may need a slow lookup (a database, a web service...) before it can transform.
+ * The command waits for the lookup without blocking, and continues once it's done.
+ */
+public interface AsyncParameterType<T> extends ParameterType<T> {
+
+    /**
+     * Starts whatever {@link #transform(CommandSender, String)} will need for this source.
+     * This is called on the thread the command is executing on, so it must not block.
+     *
+     * @param sender The CommandSender executing the command.
+     * @param source The String that will be transformed.
+     * @return A future completed once transform can run without blocking,
+     *         or null if it already can.
+     */
+    CompletableFuture<?> prepare(CommandSender sender, String source);
+}
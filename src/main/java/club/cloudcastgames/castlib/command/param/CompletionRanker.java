@@ -0,0 +1,33 @@
+package club.cloudcastgames.castlib.command.param;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Ranks tab completions against what the player has typed, so a {@link CompletionSink} keeps the best ones.
+ * Lower ranks are better. Completions of the same rank keep the order they were added in,
+ * so a type which knows which values were used most recently should add those first.
+ */
+@FunctionalInterface
+public interface CompletionRanker {
+    int EXACT = 0;
+    int PREFIX = 1;
+    int OTHER = 2;
+
+    /**
+     * Exact matches (ignoring case) first, then completions starting with what was typed, then anything else.
+     */
+    CompletionRanker DEFAULT = (source, completion) -> {
+        if (completion.equalsIgnoreCase(source)) {
+            return (EXACT);
+        }
+
+        return (StringUtils.startsWithIgnoreCase(completion, source) ? PREFIX : OTHER);
+    };
+
+    /**
+     * @param source     What the player typed.
+     * @param completion The completion.
+     * @return The completion's rank; lower is better.
+     */
+    int rank(String source, String completion);
+}
@@ -0,0 +1,130 @@
+package club.cloudcastgames.castlib.command.param;
+
+import lombok.Getter;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects the best few tab completions, as ranked by a {@link CompletionRanker}.
+ * Completions are offered one at a time, so a parameter type with thousands of candidates
+ * never has to build (or sort) a list of all of them, and can stop once the sink is full.
+ */
+public final class CompletionSink {
+    // What the player typed.
+    @Getter private final String source;
+    @Getter private final int limit;
+    @Getter private final CompletionRanker ranker;
+    // The completions kept so far, best first, and their ranks.
+    private String[] completions;
+    private int[] ranks;
+    private int size;
+
+    /**
+     * @param source The text being completed.
+     * @param limit  The most completions to keep.
+     * @param ranker The ranker to keep the best completions by.
+     */
+    public CompletionSink(String source, int limit, CompletionRanker ranker) {
+        this.source = source;
+        this.limit = Math.max(1, limit);
+        this.ranker = ranker;
+        // Grown as needed, as most completions are much shorter than the limit.
+        this.completions = new String[Math.min(this.limit, 16)];
+        this.ranks = new int[completions.length];
+    }
+
+    /**
+     * Collects every completion of a type into a list, through its sink overload.
+     *
+     * @param type   The parameter type.
+     * @param sender The Player tab completing.
+     * @param flags  The parameter's tab complete flags.
+     * @param source What the player typed so far.
+     * @return Every completion, best first.
+     */
+    public static List<String> collect(ParameterType<?> type, Player sender, Set<String> flags, String source) {
+        CompletionSink sink = new CompletionSink(source, Integer.MAX_VALUE, type.getCompletionRanker());
+        type.tabComplete(sender, flags, source, sink);
+        return (sink.getCompletions());
+    }
+
+    /**
+     * Offers a completion, ranked against the source.
+     *
+     * @param completion The completion.
+     * @return If the sink still has room. Types which offer their best candidates first can stop once it's full;
+     *         others can keep offering, and only the best-ranked completions are kept.
+     */
+    public boolean add(String completion) {
+        return (add(completion, ranker.rank(source, completion)));
+    }
+
+    /**
+     * Offers a completion which has already been ranked.
+     *
+     * @param completion The completion.
+     * @param rank       Its rank; lower is better.
+     * @return If the sink still has room (see {@link #add(String)}).
+     */
+    public boolean add(String completion, int rank) {
+        if (size == limit && rank >= ranks[size - 1]) {
+            return (false);
+        }
+
+        if (size == completions.length) {
+            int capacity = Math.min(limit, completions.length * 2);
+            completions = Arrays.copyOf(completions, capacity);
+            ranks = Arrays.copyOf(ranks, capacity);
+        }
+
+        // Behind every completion of the same rank, so ties keep their order.
+        int index = Math.min(size, limit - 1);
+
+        while (index > 0 && ranks[index - 1] > rank) {
+            // When the sink is full, this pushes out the worst completion.
+            completions[index] = completions[index - 1];
+            ranks[index] = ranks[index - 1];
+            index--;
+        }
+
+        completions[index] = completion;
+        ranks[index] = rank;
+
+        if (size < limit) {
+            size++;
+        }
+
+        return (size < limit);
+    }
+
+    /**
+     * @return If the sink holds as many completions as it keeps.
+     */
+    public boolean isFull() {
+        return (size == limit);
+    }
+
+    /**
+     * @return How many completions the sink holds.
+     */
+    public int size() {
+        return (size);
+    }
+
+    /**
+     * @return The completions kept, best first.
+     */
+    public List<String> getCompletions() {
+        List<String> list = new ArrayList<>(size);
+
+        for (int index = 0; index < size; index++) {
+            list.add(completions[index]);
+        }
+
+        return (list);
+    }
+}
@@ -0,0 +1,244 @@
+package club.cloudcastgames.castlib.command.param;
+
+/**
+ * Parses numbers, amounts ("10k", "1.5m") and durations ("1h30m") from a region of the input,
+ * without exceptions, so invalid input costs no more than valid input.
+ * <p>
+ * Only plain decimal notation is accepted: no exponents, hexadecimal, "NaN" or "Infinity".
+ */
+public final class NumberParser {
+    /**
+     * Returned by the long parsing methods when the input isn't valid.
+     * As a consequence, Long.MIN_VALUE itself can never be parsed.
+     */
+    public static final long INVALID = Long.MIN_VALUE;
+
+    // 2^53: every integer up to this is exactly representable as a double.
+    private static final long MAX_EXACT = 1L << 53;
+    // Every power of ten which is exactly representable as a double.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // Powers of ten of amount suffixes, by lowercase character (0 for none).
+    private static final int[] AMOUNT_EXPONENTS = new int[128];
+    // Milliseconds of duration units, by lowercase character (0 for none).
+    private static final long[] DURATION_UNITS = new long[128];
+
+    static {
+        AMOUNT_EXPONENTS['k'] = 3;
+        AMOUNT_EXPONENTS['m'] = 6;
+        AMOUNT_EXPONENTS['b'] = 9;
+
+        DURATION_UNITS['s'] = 1_000L;
+        DURATION_UNITS['m'] = 60_000L;
+        DURATION_UNITS['h'] = 3_600_000L;
+        DURATION_UNITS['d'] = 86_400_000L;
+        DURATION_UNITS['w'] = 604_800_000L;
+    }
+
+    // Static utility class -- cannot be created.
+    private NumberParser() {
+    }
+
+    /**
+     * Parses an integer, e.g. "-42".
+     *
+     * @return The integer, or {@link #INVALID} if the region isn't one or doesn't fit in a long.
+     */
+    public static long parseLong(CharSequence source, int start, int end) {
+        if (start >= end) {
+            return (INVALID);
+        }
+
+        char first = source.charAt(start);
+        boolean negative = first == '-';
+
+        if ((negative || first == '+') && ++start == end) {
+            return (INVALID);
+        }
+
+        // Accumulated negatively, as the negative range is the larger one.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+
+        for (int index = start; index < end; index++) {
+            int digit = source.charAt(index) - '0';
+
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                return (INVALID);
+            }
+
+            result *= 10;
+
+            if (result < limit + digit) {
+                return (INVALID);
+            }
+
+            result -= digit;
+        }
+
+        return (negative ? result : -result);
+    }
+
+    /**
+     * Parses a decimal number, e.g. "-1.25".
+     *
+     * @return The number, or NaN if the region isn't one or is too large for a double.
+     */
+    public static double parseDouble(CharSequence source, int start, int end) {
+        return (parseDecimal(source, start, end, 0));
+    }
+
+    /**
+     * Parses a decimal number with an optional suffix: "k" (thousand), "m" (million) or "b" (billion), e.g. "1.5m".
+     *
+     * @return The number, or NaN if the region isn't one.
+     */
+    public static double parseAmount(CharSequence source, int start, int end) {
+        int exponent = end > start ? suffix(AMOUNT_EXPONENTS, source.charAt(end - 1)) : 0;
+        return (parseDecimal(source, start, exponent == 0 ? end : end - 1, exponent));
+    }
+
+    /**
+     * Parses a whole amount within bounds, e.g. "42" or "10k".
+     *
+     * @param min The smallest valid value.
+     * @param max The largest valid value.
+     * @return The amount, or {@link #INVALID} if the region isn't a whole amount between min and max.
+     */
+    public static long parseWholeAmount(CharSequence source, int start, int end, long min, long max) {
+        long parsed = parseLong(source, start, end);
+
+        if (parsed == INVALID) {
+            double amount = parseAmount(source, start, end);
+
+            // Rejects NaN and fractions as well; the amount is exact here unless it's beyond 2^53.
+            if (!(amount == Math.rint(amount) && amount >= min && amount <= max)) {
+                return (INVALID);
+            }
+
+            parsed = (long) amount;
+        }
+
+        return (parsed >= min && parsed <= max ? parsed : INVALID);
+    }
+
+    /**
+     * Parses a duration made of numbers with units: "s", "m", "h", "d" or "w", e.g. "1h30m" or "1.5d".
+     * A number without any unit is in seconds.
+     *
+     * @return The duration in milliseconds, or {@link #INVALID} if the region isn't one.
+     */
+    public static long parseDuration(CharSequence source, int start, int end) {
+        if (start >= end) {
+            return (INVALID);
+        }
+
+        double total = 0;
+        int position = start;
+
+        while (position < end) {
+            int numberEnd = position;
+
+            while (numberEnd < end && (Character.isDigit(source.charAt(numberEnd)) || source.charAt(numberEnd) == '.')) {
+                numberEnd++;
+            }
+
+            long unit = numberEnd < end ? suffix(DURATION_UNITS, source.charAt(numberEnd)) : (position == start ? 1_000L : 0);
+
+            if (numberEnd == position || unit == 0) {
+                return (INVALID);
+            }
+
+            total += parseDecimal(source, position, numberEnd, 0) * unit;
+            position = numberEnd + 1;
+        }
+
+        // NaN (from a number like "1.2.3") fails this too.
+        return (total >= 0 && total < Long.MAX_VALUE ? Math.round(total) : INVALID);
+    }
+
+    private static int suffix(int[] table, char character) {
+        character = Character.toLowerCase(character);
+        return (character < table.length ? table[character] : 0);
+    }
+
+    private static long suffix(long[] table, char character) {
+        character = Character.toLowerCase(character);
+        return (character < table.length ? table[character] : 0);
+    }
+
+    /**
+     * Parses a decimal number multiplied by 10^exponent.
+     * Numbers with up to 15 or so significant digits are computed exactly (and correctly rounded) from their digits;
+     * only longer ones go through Double#parseDouble, after they've been validated.
+     */
+    private static double parseDecimal(CharSequence source, int start, int end, int exponent) {
+        int index = start;
+        boolean negative = false;
+
+        if (index < end && (source.charAt(index) == '-' || source.charAt(index) == '+')) {
+            negative = source.charAt(index) == '-';
+            index++;
+        }
+
+        long mantissa = 0;
+        int fractionDigits = 0;
+        boolean digits = false;
+        boolean point = false;
+        boolean exact = true;
+
+        for (; index < end; index++) {
+            char character = source.charAt(index);
+
+            if (character == '.') {
+                if (point) {
+                    return (Double.NaN);
+                }
+
+                point = true;
+                continue;
+            }
+
+            int digit = character - '0';
+
+            if (digit < 0 || digit > 9) {
+                return (Double.NaN);
+            }
+
+            digits = true;
+
+            if (exact && mantissa <= (MAX_EXACT - digit) / 10) {
+                mantissa = mantissa * 10 + digit;
+                fractionDigits += point ? 1 : 0;
+            } else {
+                // Too many digits to compute exactly; the fallback below parses the whole region.
+                exact = false;
+            }
+        }
+
+        if (!digits) {
+            return (Double.NaN);
+        }
+
+        double value;
+        int scale = exponent - fractionDigits;
+
+        if (exact && scale >= 0 && scale < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[scale];
+        } else if (exact && scale < 0 && -scale < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-scale];
+        } else {
+            // The region only has a sign, digits and a point, so this can't throw.
+            value = Math.abs(Double.parseDouble(source.subSequence(start, end).toString() + "e" + exponent));
+        }
+
+        if (Double.isInfinite(value)) {
+            return (Double.NaN);
+        }
+
+        return (negative ? -value : value);
+    }
+}
@@ -1,19 +1,82 @@
 package club.cloudcastgames.castlib.command.param;
 
+import com.google.common.collect.ImmutableSet;
 import lombok.Getter;
 
+import java.time.Duration;
+import java.util.Set;
+
 public class ParameterData {
     @Getter private String name;
     @Getter private boolean wildcard;
     @Getter private String defaultValue;
     @Getter private String[] tabCompleteFlags;
+    // The same flags, as parameter types are given them on every tab completion.
+    @Getter private Set<String> tabCompleteFlagSet;
     @Getter private Class<?> paramterClass;
+    @Getter private Range range;
+    // If amounts like "10k" are accepted (see Range#amounts()).
+    @Getter private boolean amounts;
+    // The range's bounds, copied out of the annotation as calls to it are reflective.
+    private double min = -Double.MAX_VALUE;
+    private double max = Double.MAX_VALUE;
 
     public ParameterData(Param parameter, Class<?> paramterClass) {
+        this(parameter, null, paramterClass);
+    }
+
+    public ParameterData(Param parameter, Range range, Class<?> paramterClass) {
         this.name = parameter.name();
         this.wildcard = parameter.wildcard();
         this.defaultValue = parameter.defaultValue();
         this.tabCompleteFlags = parameter.tabCompleteFlags();
+        this.tabCompleteFlagSet = ImmutableSet.copyOf(tabCompleteFlags);
         this.paramterClass = paramterClass;
+        this.range = range;
+
+        if (range != null) {
+            this.min = range.min();
+            this.max = range.max();
+            this.amounts = range.amounts();
+        }
+    }
+
+    /**
+     * @param value The transformed value of this parameter.
+     * @return If the value is within this parameter's {@link Range}. Always true if it has none, or isn't a number or Duration.
+     */
+    public boolean isInRange(Object value) {
+        if (range == null) {
+            return (true);
+        }
+
+        double number;
+
+        if (value instanceof Number) {
+            number = ((Number) value).doubleValue();
+        } else if (value instanceof Duration) {
+            number = ((Duration) value).toMillis();
+        } else {
+            return (true);
+        }
+
+        return (number >= min && number <= max);
+    }
+
+    /**
+     * @return The message telling a sender what this parameter's {@link Range} is.
+     */
+    public String getRangeMessage() {
+        if (min == -Double.MAX_VALUE) {
+            return (name + " must be at most " + format(max) + ".");
+        } else if (max == Double.MAX_VALUE) {
+            return (name + " must be at least " + format(min) + ".");
+        }
+
+        return (name + " must be between " + format(min) + " and " + format(max) + ".");
+    }
+
+    private static String format(double bound) {
+        return (bound == Math.rint(bound) && Math.abs(bound) < 1e15 ? Long.toString((long) bound) : Double.toString(bound));
     }
 }
@@ -1,13 +1,74 @@
 package club.cloudcastgames.castlib.command.param;
 
+import club.cloudcastgames.castlib.command.CommandContext;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
 public interface ParameterType<T> {
     T transform(CommandSender sender, String source);
 
-    List<String> tabComplete(Player sender, Set<String> flags, String source);
+    /**
+     * Transforms a parameter with the context of the command being run.
+     * Override this instead of {@link #transform(CommandSender, String)} to see the rest of the command line.
+     *
+     * @param context The context of the command being run.
+     * @param source  The String to transform.
+     * @return The transformed value, or null if the sender has been told it's invalid.
+     */
+    default T transform(CommandContext context, String source) {
+        return (transform(context.getSender(), source));
+    }
+
+    /**
+     * Tab completes a parameter. By default, there are no completions.
+     * Types which implement {@link #tabComplete(Player, Set, String, CompletionSink)} instead can implement this
+     * with {@link CompletionSink#collect(ParameterType, Player, Set, String)}.
+     *
+     * @param sender The Player tab completing.
+     * @param flags  The parameter's tab complete flags.
+     * @param source What the player typed so far.
+     * @return Every completion.
+     */
+    default List<String> tabComplete(Player sender, Set<String> flags, String source) {
+        return (new ArrayList<>());
+    }
+
+    /**
+     * Tab completes a parameter into a sink, which keeps only the best few completions.
+     * Types with many candidates should implement this, and stop once {@link CompletionSink#add(String)} returns false
+     * if their candidates come best first. By default, every completion from
+     * {@link #tabComplete(Player, Set, String)} is offered (lists aren't best first), and the sink keeps the best.
+     *
+     * @param sender The Player tab completing.
+     * @param flags  The parameter's tab complete flags.
+     * @param source What the player typed so far.
+     * @param sink   The sink to add completions to.
+     */
+    default void tabComplete(Player sender, Set<String> flags, String source, CompletionSink sink) {
+        for (String completion : tabComplete(sender, flags, source)) {
+            sink.add(completion);
+        }
+    }
+
+    /**
+     * @return The ranker this type's completions are kept by.
+     */
+    default CompletionRanker getCompletionRanker() {
+        return (CompletionRanker.DEFAULT);
+    }
+
+    /**
+     * Whether this type can transform on any thread. Types which only parse their source (numbers, durations...)
+     * can; types which look things up through Bukkit (players, worlds...) can't, and are always transformed on the main thread.
+     * For async commands, thread-safe parameters are transformed on the command's pool thread instead, off the main thread.
+     *
+     * @return If {@link #transform(CommandSender, String)} is safe to call off the main thread.
+     */
+    default boolean isThreadSafe() {
+        return (false);
+    }
 }
@@ -0,0 +1,24 @@
+package club.cloudcastgames.castlib.command.param;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Bounds a numeric parameter (or a Duration, in milliseconds). Values outside the bounds are rejected
+ * with a message before the command runs.
+ * Numeric parameters can also accept amounts with a suffix, which they don't by default.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface Range {
+    double min() default (-Double.MAX_VALUE);
+    double max() default (Double.MAX_VALUE);
+
+    /**
+     * If int, long, double and float parameters accept amounts with a suffix: "k" (thousand), "m" (million)
+     * or "b" (billion), e.g. "10k" or "1.5m". Whole types only accept amounts which come out whole.
+     */
+    boolean amounts() default false;
+}
@@ -1,6 +1,7 @@
 package club.cloudcastgames.castlib.command.param.defaults;
 
 import club.cloudcastgames.castlib.command.param.ParameterType;
+import club.cloudcastgames.castlib.util.BKTree;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
@@ -14,6 +15,7 @@ import java.util.stream.Collectors;
 
 public class BooleanParameterType implements ParameterType<Boolean> {
     private static final Map<String, Boolean> MAP = new HashMap<>();
+    private static final BKTree SUGGESTIONS = new BKTree();
 
     // We can add more if you find someone using something like yas or ye...
     static {
@@ -24,12 +26,15 @@ public class BooleanParameterType implements ParameterType<Boolean> {
         MAP.put("false", false);
         MAP.put("off", false);
         MAP.put("no", false);
+
+        MAP.keySet().forEach(SUGGESTIONS::add);
     }
 
     @Override
     public Boolean transform(CommandSender sender, String source) {
         if (!MAP.containsKey(source.toLowerCase())) {
-            sender.sendMessage(ChatColor.RED + source + " is not a valid boolean.");
+            List<String> suggestions = SUGGESTIONS.search(source, BKTree.tolerance(source.length()), 1);
+            sender.sendMessage(ChatColor.RED + source + " is not a valid boolean." + (suggestions.isEmpty() ? "" : " Did you mean " + suggestions.get(0) + "?"));
             return (null);
         }
         return MAP.get(source.toLowerCase());
@@ -39,4 +44,10 @@ public class BooleanParameterType implements ParameterType<Boolean> {
     public List<String> tabComplete(Player sender, Set<String> flags, String source) {
         return (MAP.keySet().stream().filter(string -> StringUtils.startsWithIgnoreCase(string, source)).collect(Collectors.toList()));
     }
+
+    @Override
+    public boolean isThreadSafe() {
+        return (true);
+    }
+
 }
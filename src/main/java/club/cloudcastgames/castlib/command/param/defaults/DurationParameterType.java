@@ -0,0 +1,38 @@
+package club.cloudcastgames.castlib.command.param.defaults;
+
+import club.cloudcastgames.castlib.command.param.NumberParser;
+import club.cloudcastgames.castlib.command.param.ParameterType;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Durations like "30s", "1h30m" or "1.5d" (see {@link NumberParser#parseDuration(CharSequence, int, int)}).
+ */
+public class DurationParameterType implements ParameterType<Duration> {
+
+    public Duration transform(CommandSender sender, String source) {
+        long parsed = NumberParser.parseDuration(source, 0, source.length());
+
+        if (parsed == NumberParser.INVALID) {
+            sender.sendMessage(ChatColor.RED + source + " is not a valid duration. Try something like 1h30m.");
+            return (null);
+        }
+
+        return (Duration.ofMillis(parsed));
+    }
+
+    public List<String> tabComplete(Player sender, Set<String> flags, String source) {
+        return (new ArrayList<>());
+    }
+
+    public boolean isThreadSafe() {
+        return (true);
+    }
+
+}
@@ -1,6 +1,8 @@
 package club.cloudcastgames.castlib.command.param.defaults;
 
+import club.cloudcastgames.castlib.command.param.NumberParser;
 import club.cloudcastgames.castlib.command.param.ParameterType;
+import club.cloudcastgames.castlib.command.param.Range;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -10,30 +12,37 @@ import java.util.List;
 import java.util.Set;
 
 public class FloatParameterType implements ParameterType<Float> {
+    private final boolean amounts;
 
-    public Float transform(CommandSender sender, String source) {
-        if (source.toLowerCase().contains("e")) {
-            sender.sendMessage(ChatColor.RED + source + " is not a valid number.");
-            return (null);
-        }
+    public FloatParameterType() {
+        this(false);
+    }
 
-        try {
-            float parsed = Float.parseFloat(source);
+    /**
+     * @param amounts If amounts like "10k" are accepted too (see {@link Range#amounts()}).
+     */
+    public FloatParameterType(boolean amounts) {
+        this.amounts = amounts;
+    }
 
-            if (Float.isNaN(parsed) || !Float.isFinite(parsed)) {
-                sender.sendMessage(ChatColor.RED + source + " is not a valid number.");
-                return (null);
-            }
+    public Float transform(CommandSender sender, String source) {
+        // NaN for anything which isn't a plain (finite) decimal, or an amount like "1.5k" if they're accepted.
+        double parsed = amounts ? NumberParser.parseAmount(source, 0, source.length()) : NumberParser.parseDouble(source, 0, source.length());
 
-            return (parsed);
-        } catch (NumberFormatException exception) {
+        if (Double.isNaN(parsed) || Math.abs(parsed) > Float.MAX_VALUE) {
             sender.sendMessage(ChatColor.RED + source + " is not a valid number.");
             return (null);
         }
+
+        return ((float) parsed);
     }
 
     public List<String> tabComplete(Player sender, Set<String> flags, String source) {
         return (new ArrayList<>());
     }
 
-}
\ No newline at end of file
+    public boolean isThreadSafe() {
+        return (true);
+    }
+
+}
@@ -1,6 +1,8 @@
 package club.cloudcastgames.castlib.command.param.defaults;
 
+import club.cloudcastgames.castlib.command.param.NumberParser;
 import club.cloudcastgames.castlib.command.param.ParameterType;
+import club.cloudcastgames.castlib.command.param.Range;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -10,18 +12,38 @@ import java.util.List;
 import java.util.Set;
 
 public class IntegerParameterType implements ParameterType<Integer> {
+    private final boolean amounts;
+
+    public IntegerParameterType() {
+        this(false);
+    }
+
+    /**
+     * @param amounts If amounts like "10k" are accepted too, as long as they're whole (see {@link Range#amounts()}).
+     */
+    public IntegerParameterType(boolean amounts) {
+        this.amounts = amounts;
+    }
 
     public Integer transform(CommandSender sender, String source) {
-        try {
-            return (Integer.parseInt(source));
-        } catch (NumberFormatException exception) {
+        long parsed = amounts ? NumberParser.parseWholeAmount(source, 0, source.length(), Integer.MIN_VALUE, Integer.MAX_VALUE)
+                : NumberParser.parseLong(source, 0, source.length());
+
+        // INVALID is below Integer.MIN_VALUE, so it fails this too.
+        if (parsed < Integer.MIN_VALUE || parsed > Integer.MAX_VALUE) {
             sender.sendMessage(ChatColor.RED + source + " is not a valid number.");
             return (null);
         }
+
+        return ((int) parsed);
     }
 
     public List<String> tabComplete(Player sender, Set<String> flags, String source) {
         return (new ArrayList<>());
     }
 
-}
\ No newline at end of file
+    public boolean isThreadSafe() {
+        return (true);
+    }
+
+}
@@ -0,0 +1,48 @@
+package club.cloudcastgames.castlib.command.param.defaults;
+
+import club.cloudcastgames.castlib.command.param.NumberParser;
+import club.cloudcastgames.castlib.command.param.ParameterType;
+import club.cloudcastgames.castlib.command.param.Range;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+public class LongParameterType implements ParameterType<Long> {
+    private final boolean amounts;
+
+    public LongParameterType() {
+        this(false);
+    }
+
+    /**
+     * @param amounts If amounts like "10k" are accepted too, as long as they're whole (see {@link Range#amounts()}).
+     */
+    public LongParameterType(boolean amounts) {
+        this.amounts = amounts;
+    }
+
+    public Long transform(CommandSender sender, String source) {
+        long parsed = amounts ? NumberParser.parseWholeAmount(source, 0, source.length(), -Long.MAX_VALUE, Long.MAX_VALUE)
+                : NumberParser.parseLong(source, 0, source.length());
+
+        if (parsed == NumberParser.INVALID) {
+            sender.sendMessage(ChatColor.RED + source + " is not a valid number.");
+            return (null);
+        }
+
+        return (parsed);
+    }
+
+    public List<String> tabComplete(Player sender, Set<String> flags, String source) {
+        return (new ArrayList<>());
+    }
+
+    public boolean isThreadSafe() {
+        return (true);
+    }
+
+}
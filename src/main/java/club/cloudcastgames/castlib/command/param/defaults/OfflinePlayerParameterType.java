@@ -1,36 +1,65 @@
 package club.cloudcastgames.castlib.command.param.defaults;
 
 import club.cloudcastgames.castlib.CastLib;
-import club.cloudcastgames.castlib.command.param.ParameterType;
-import org.apache.commons.lang.StringUtils;
+import club.cloudcastgames.castlib.command.param.CompletionSink;
+import club.cloudcastgames.castlib.command.param.AsyncParameterType;
+import club.cloudcastgames.castlib.player.PlayerNameIndex;
+import club.cloudcastgames.castlib.player.UUIDCache;
+import org.bukkit.ChatColor;
 import org.bukkit.OfflinePlayer;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
-public class OfflinePlayerParameterType implements ParameterType<OfflinePlayer> {
+public class OfflinePlayerParameterType implements AsyncParameterType<OfflinePlayer> {
+
+    public CompletableFuture<?> prepare(CommandSender sender, String source) {
+        if (isSelf(sender, source) || PlayerNameIndex.getPlayerExact(source) != null) {
+            return (null);
+        }
+
+        // Names we've never seen are looked up off the main thread, then the command carries on.
+        CompletableFuture<UUID> lookup = UUIDCache.resolve(source);
+        return (lookup.isDone() ? null : lookup);
+    }
 
     public OfflinePlayer transform(CommandSender sender, String source) {
-        if (sender instanceof Player && (source.equalsIgnoreCase("self") || source.equals(""))) {
+        if (isSelf(sender, source)) {
             return ((Player) sender);
         }
 
-        return (CastLib.getInstance().getServer().getOfflinePlayer(source));
+        Player online = PlayerNameIndex.getPlayerExact(source);
+
+        if (online != null) {
+            return (online);
+        }
+
+        UUID uuid = UUIDCache.getUUID(source);
+
+        if (uuid == null) {
+            sender.sendMessage(ChatColor.RED + "No player with the name " + source + " found.");
+            return (null);
+        }
+
+        // Getting an offline player by UUID never blocks.
+        return (CastLib.getInstance().getServer().getOfflinePlayer(uuid));
     }
 
     public List<String> tabComplete(Player sender, Set<String> flags, String source) {
-        List<String> completions = new ArrayList<>();
+        return (CompletionSink.collect(this, sender, flags, source));
+    }
 
-        for (Player player : CastLib.getInstance().getServer().getOnlinePlayers()) {
-            if (StringUtils.startsWithIgnoreCase(player.getName(), source)) {
-                completions.add(player.getName());
-            }
-        }
+    public void tabComplete(Player sender, Set<String> flags, String source, CompletionSink sink) {
+        // Names come in alphabetical order, so an exact match comes first and we can stop once the sink is full.
+        PlayerNameIndex.forEachName(null, source, sink::add);
+    }
 
-        return (completions);
+    private boolean isSelf(CommandSender sender, String source) {
+        return (sender instanceof Player && (source.equalsIgnoreCase("self") || source.equals("")));
     }
 
-}
\ No newline at end of file
+}
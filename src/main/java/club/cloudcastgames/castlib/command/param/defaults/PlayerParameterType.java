@@ -1,13 +1,12 @@
 package club.cloudcastgames.castlib.command.param.defaults;
 
-import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.param.CompletionSink;
 import club.cloudcastgames.castlib.command.param.ParameterType;
-import org.apache.commons.lang.StringUtils;
+import club.cloudcastgames.castlib.player.PlayerNameIndex;
 import org.bukkit.ChatColor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
 
@@ -18,10 +17,11 @@ public class PlayerParameterType implements ParameterType<Player> {
             return ((Player) sender);
         }
 
-        Player player = CastLib.getInstance().getServer().getPlayer(source);
+        Player player = PlayerNameIndex.getPlayer(source);
 
         if (player == null) {
-            sender.sendMessage(ChatColor.RED + "No player with the name " + source + " found.");
+            String suggestion = PlayerNameIndex.suggest(sender instanceof Player ? (Player) sender : null, source);
+            sender.sendMessage(ChatColor.RED + "No player with the name " + source + " found." + (suggestion == null ? "" : " Did you mean " + suggestion + "?"));
             return (null);
         }
 
@@ -29,15 +29,12 @@ public class PlayerParameterType implements ParameterType<Player> {
     }
 
     public List<String> tabComplete(Player sender, Set<String> flags, String source) {
-        List<String> completions = new ArrayList<>();
-
-        for (Player player : CastLib.getInstance().getServer().getOnlinePlayers()) {
-            if (StringUtils.startsWithIgnoreCase(player.getName(), source) && sender.canSee(player)) {
-                completions.add(player.getName());
-            }
-        }
+        return (CompletionSink.collect(this, sender, flags, source));
+    }
 
-        return (completions);
+    public void tabComplete(Player sender, Set<String> flags, String source, CompletionSink sink) {
+        // Names come in alphabetical order, so an exact match comes first and we can stop once the sink is full.
+        PlayerNameIndex.forEachName(sender, source, sink::add);
     }
 
 }
\ No newline at end of file
@@ -1,24 +1,30 @@
 package club.cloudcastgames.castlib.command.param.defaults;
 
 import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.param.CompletionSink;
 import club.cloudcastgames.castlib.command.param.ParameterType;
+import club.cloudcastgames.castlib.util.BKTree;
 import org.apache.commons.lang.StringUtils;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
-import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
 public class WorldParameterType implements ParameterType<World> {
+    // World names for suggestions, brought up to date with the loaded worlds when one is needed.
+    private final BKTree suggestions = new BKTree();
+    private final Set<String> suggestedNames = new HashSet<>();
 
     public World transform(CommandSender sender, String source) {
         World world = CastLib.getInstance().getServer().getWorld(source);
 
         if (world == null) {
-            sender.sendMessage(ChatColor.RED + "No world with the name " + source + " found.");
+            String suggestion = suggest(source);
+            sender.sendMessage(ChatColor.RED + "No world with the name " + source + " found." + (suggestion == null ? "" : " Did you mean " + suggestion + "?"));
             return (null);
         }
 
@@ -26,15 +32,41 @@ public class WorldParameterType implements ParameterType<World> {
     }
 
     public List<String> tabComplete(Player sender, Set<String> flags, String source) {
-        List<String> completions = new ArrayList<>();
+        return (CompletionSink.collect(this, sender, flags, source));
+    }
 
+    public void tabComplete(Player sender, Set<String> flags, String source, CompletionSink sink) {
         for (World world : CastLib.getInstance().getServer().getWorlds()) {
+            // Worlds aren't in any order, so every match is offered and the sink keeps the best.
             if (StringUtils.startsWithIgnoreCase(world.getName(), source)) {
-                completions.add(world.getName());
+                sink.add(world.getName());
             }
         }
+    }
+
+    private synchronized String suggest(String source) {
+        // Only worlds which were loaded or unloaded since the last time are added or removed.
+        Set<String> loaded = new HashSet<>();
+
+        for (World world : CastLib.getInstance().getServer().getWorlds()) {
+            loaded.add(world.getName());
+
+            if (suggestedNames.add(world.getName())) {
+                suggestions.add(world.getName());
+            }
+        }
+
+        suggestedNames.removeIf(name -> {
+            if (loaded.contains(name)) {
+                return (false);
+            }
+
+            suggestions.remove(name);
+            return (true);
+        });
 
-        return (completions);
+        List<String> closest = suggestions.search(source, BKTree.tolerance(source.length()), 1);
+        return (closest.isEmpty() ? null : closest.get(0));
     }
 
-}
\ No newline at end of file
+}
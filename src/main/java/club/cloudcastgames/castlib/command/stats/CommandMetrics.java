@@ -0,0 +1,193 @@
+package club.cloudcastgames.castlib.command.stats;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.command.AsyncCommandExecutor;
+import club.cloudcastgames.castlib.command.AsyncPool;
+import club.cloudcastgames.castlib.command.CastCommandHandler;
+import club.cloudcastgames.castlib.command.CommandData;
+import com.google.common.base.Preconditions;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+
+/**
+ * Access to the statistics every command collects (see {@link CommandData#getStats()}),
+ * and the periodic dump of them in the Prometheus text format.
+ */
+public final class CommandMetrics {
+    private static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+    private static boolean initiated = false;
+
+    private CommandMetrics() {}
+
+    /**
+     * Starts dumping statistics to disk, as configured in the "stats" section of CastLib's config.
+     * This can only be called once, and is called automatically when CastLib enables.
+     */
+    public static void init() {
+        Preconditions.checkState(!initiated);
+        initiated = true;
+
+        long interval = CastLib.getInstance().getConfig().getLong("stats.dump-interval", 60L);
+        File file = new File(CastLib.getInstance().getDataFolder(), CastLib.getInstance().getConfig().getString("stats.dump-file", "stats.prom"));
+
+        if (interval <= 0) {
+            return;
+        }
+
+        new BukkitRunnable() {
+
+            public void run() {
+                try {
+                    dump(file);
+                } catch (IOException e) {
+                    CastLib.getInstance().getLogger().warning("Couldn't write command statistics to " + file + ": " + e.getMessage());
+                }
+            }
+
+        }.runTaskTimerAsynchronously(CastLib.getInstance(), interval * 20L, interval * 20L);
+    }
+
+    /**
+     * Gets the statistics of a command.
+     *
+     * @param name Any of the command's names.
+     * @return The command's statistics, or null if there's no such command.
+     */
+    public static CommandStats getStats(String name) {
+        CommandData command = CastCommandHandler.getCommandTrie().get(name);
+        return (command == null ? null : command.getStats());
+    }
+
+    /**
+     * Writes the statistics of every command which has been used to a file.
+     * The file is replaced in one go, so readers never see it half-written.
+     *
+     * @param file The file to write.
+     */
+    public static void dump(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        parent.mkdirs();
+
+        File temporary = new File(parent, file.getName() + ".tmp");
+
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(temporary), StandardCharsets.UTF_8))) {
+            write(writer);
+        }
+
+        Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes the statistics of every command which has been used, in the Prometheus text format.
+     * Latencies are a summary per command and phase; outcomes are a counter per command.
+     * The async pools' queues, rejections and timeouts are included too.
+     *
+     * @param writer Where to write the statistics.
+     */
+    public static void write(Writer writer) throws IOException {
+        writer.write("# HELP castlib_command_latency_seconds Time spent in each phase of running a command.\n");
+        writer.write("# TYPE castlib_command_latency_seconds summary\n");
+
+        for (CommandData command : CastCommandHandler.getCommands()) {
+            for (CommandPhase phase : CommandPhase.values()) {
+                LatencyHistogram histogram = command.getStats().getHistogram(phase);
+
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+
+                String labels = "command=\"" + escape(command.getName()) + "\",phase=\"" + phase.getKey() + "\"";
+
+                for (double quantile : QUANTILES) {
+                    writer.write("castlib_command_latency_seconds{" + labels + ",quantile=\"" + quantile + "\"} " + seconds(histogram.getPercentile(quantile * 100)) + "\n");
+                }
+
+                writer.write("castlib_command_latency_seconds_sum{" + labels + "} " + seconds(histogram.getTotal()) + "\n");
+                writer.write("castlib_command_latency_seconds_count{" + labels + "} " + histogram.getCount() + "\n");
+            }
+        }
+
+        writer.write("# HELP castlib_command_invocations_total Runs of each command, by how they ended.\n");
+        writer.write("# TYPE castlib_command_invocations_total counter\n");
+
+        for (CommandData command : CastCommandHandler.getCommands()) {
+            if (command.getStats().getInvocations() == 0) {
+                continue;
+            }
+
+            for (CommandOutcome outcome : CommandOutcome.values()) {
+                writer.write("castlib_command_invocations_total{command=\"" + escape(command.getName()) + "\",outcome=\"" + outcome.getKey() + "\"} " + command.getStats().getCount(outcome) + "\n");
+            }
+        }
+
+        writer.write("# HELP castlib_async_pool_queue_depth Async commands waiting for a thread.\n");
+        writer.write("# TYPE castlib_async_pool_queue_depth gauge\n");
+
+        for (AsyncPool pool : AsyncCommandExecutor.getPools().values()) {
+            writer.write("castlib_async_pool_queue_depth{pool=\"" + escape(pool.getName()) + "\"} " + pool.getQueueDepth() + "\n");
+        }
+
+        writer.write("# HELP castlib_async_pool_active_threads Threads running an async command.\n");
+        writer.write("# TYPE castlib_async_pool_active_threads gauge\n");
+
+        for (AsyncPool pool : AsyncCommandExecutor.getPools().values()) {
+            writer.write("castlib_async_pool_active_threads{pool=\"" + escape(pool.getName()) + "\"} " + pool.getActiveThreads() + "\n");
+        }
+
+        writer.write("# HELP castlib_async_pool_rejected_total Async commands rejected because their pool was full.\n");
+        writer.write("# TYPE castlib_async_pool_rejected_total counter\n");
+
+        for (AsyncPool pool : AsyncCommandExecutor.getPools().values()) {
+            writer.write("castlib_async_pool_rejected_total{pool=\"" + escape(pool.getName()) + "\"} " + pool.getRejected() + "\n");
+        }
+
+        writer.write("# HELP castlib_async_pool_timeouts_total Async commands cancelled because their deadline passed.\n");
+        writer.write("# TYPE castlib_async_pool_timeouts_total counter\n");
+
+        for (AsyncPool pool : AsyncCommandExecutor.getPools().values()) {
+            writer.write("castlib_async_pool_timeouts_total{pool=\"" + escape(pool.getName()) + "\"} " + pool.getTimedOut() + "\n");
+        }
+
+        writer.write("# HELP castlib_async_pool_queue_wait_seconds Time async commands spent waiting for a thread.\n");
+        writer.write("# TYPE castlib_async_pool_queue_wait_seconds summary\n");
+
+        for (AsyncPool pool : AsyncCommandExecutor.getPools().values()) {
+            LatencyHistogram histogram = pool.getQueueWait();
+            String labels = "pool=\"" + escape(pool.getName()) + "\"";
+
+            for (double quantile : QUANTILES) {
+                writer.write("castlib_async_pool_queue_wait_seconds{" + labels + ",quantile=\"" + quantile + "\"} " + seconds(histogram.getPercentile(quantile * 100)) + "\n");
+            }
+
+            writer.write("castlib_async_pool_queue_wait_seconds_sum{" + labels + "} " + seconds(histogram.getTotal()) + "\n");
+            writer.write("castlib_async_pool_queue_wait_seconds_count{" + labels + "} " + histogram.getCount() + "\n");
+        }
+    }
+
+    /**
+     * Formats a duration for players to read, such as "850µs" or "12.40ms".
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The formatted duration.
+     */
+    public static String formatNanos(double nanos) {
+        if (nanos < 1_000_000) {
+            return (String.format(Locale.ROOT, "%.0fµs", nanos / 1_000));
+        }
+
+        return (String.format(Locale.ROOT, "%.2fms", nanos / 1_000_000));
+    }
+
+    private static String seconds(long nanos) {
+        return (String.format(Locale.ROOT, "%.9f", nanos / 1e9));
+    }
+
+    private static String escape(String label) {
+        return (label.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"));
+    }
+}
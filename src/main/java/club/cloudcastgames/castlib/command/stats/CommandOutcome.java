@@ -0,0 +1,28 @@
+package club.cloudcastgames.castlib.command.stats;
+
+/**
+ * How a run of a command ended.
+ */
+public enum CommandOutcome {
+    /** The command method returned normally. */
+    SUCCESS,
+    /** The arguments were missing or couldn't be transformed, so the method was never called. */
+    USAGE_ERROR,
+    /** The command method (or a parameter lookup) threw an exception. */
+    EXCEPTION,
+    /** The command wasn't allowed to run right then, such as when its async pool was full. */
+    REJECTED,
+    /** The command's async deadline passed before it could start. */
+    TIMED_OUT,
+    /** The sender (or everyone) used the command too often, so it didn't run. */
+    RATE_LIMITED,
+    /** The sender wasn't allowed to use the command, for lack of permission or because it's player-only. */
+    DENIED;
+
+    /**
+     * @return The name used in stats output, such as "usage_error".
+     */
+    public String getKey() {
+        return (name().toLowerCase());
+    }
+}
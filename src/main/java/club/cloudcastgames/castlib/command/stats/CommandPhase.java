@@ -0,0 +1,24 @@
+package club.cloudcastgames.castlib.command.stats;
+
+/**
+ * The phases of running a command which are timed separately.
+ */
+public enum CommandPhase {
+    /** Finding the command for a command line. */
+    DISPATCH,
+    /** Checking if the sender can use the command. */
+    PERMISSION,
+    /** Transforming the arguments into the method's parameters. */
+    TRANSFORM,
+    /** Waiting for an async command to start running. */
+    QUEUE_WAIT,
+    /** Running the command method itself. */
+    EXECUTION;
+
+    /**
+     * @return The name used in stats output, such as "queue_wait".
+     */
+    public String getKey() {
+        return (name().toLowerCase());
+    }
+}
@@ -0,0 +1,72 @@
+package club.cloudcastgames.castlib.command.stats;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The latency histograms and outcome counters of a single command.
+ * Histograms are only created when a phase is first recorded, so commands which are never used cost almost nothing.
+ */
+public final class CommandStats {
+    private static final CommandPhase[] PHASES = CommandPhase.values();
+    private static final CommandOutcome[] OUTCOMES = CommandOutcome.values();
+    // Returned for phases which haven't been recorded yet. Never recorded into.
+    private static final LatencyHistogram EMPTY = new LatencyHistogram();
+
+    private final AtomicReferenceArray<LatencyHistogram> histograms = new AtomicReferenceArray<>(PHASES.length);
+    private final AtomicLongArray outcomes = new AtomicLongArray(OUTCOMES.length);
+
+    /**
+     * Records how long a phase took.
+     *
+     * @param phase The phase.
+     * @param nanos How long it took, in nanoseconds.
+     */
+    public void record(CommandPhase phase, long nanos) {
+        LatencyHistogram histogram = histograms.get(phase.ordinal());
+
+        if (histogram == null) {
+            histograms.compareAndSet(phase.ordinal(), null, new LatencyHistogram());
+            histogram = histograms.get(phase.ordinal());
+        }
+
+        histogram.record(nanos);
+    }
+
+    /**
+     * Counts a run of the command.
+     *
+     * @param outcome How the run ended.
+     */
+    public void count(CommandOutcome outcome) {
+        outcomes.incrementAndGet(outcome.ordinal());
+    }
+
+    /**
+     * @return The histogram of a phase. It's empty if the phase was never recorded.
+     */
+    public LatencyHistogram getHistogram(CommandPhase phase) {
+        LatencyHistogram histogram = histograms.get(phase.ordinal());
+        return (histogram == null ? EMPTY : histogram);
+    }
+
+    /**
+     * @return How many runs ended with the given outcome.
+     */
+    public long getCount(CommandOutcome outcome) {
+        return (outcomes.get(outcome.ordinal()));
+    }
+
+    /**
+     * @return How many runs there were, whatever their outcome.
+     */
+    public long getInvocations() {
+        long invocations = 0;
+
+        for (CommandOutcome outcome : OUTCOMES) {
+            invocations += getCount(outcome);
+        }
+
+        return (invocations);
+    }
+}
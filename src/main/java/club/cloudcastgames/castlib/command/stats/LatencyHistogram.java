@@ -0,0 +1,133 @@
+package club.cloudcastgames.castlib.command.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations in nanoseconds, with a fixed amount of memory.
+ * <p>
+ * Buckets are log-linear (like HdrHistogram): every power of two is split into 16 equal buckets,
+ * so any recorded value is known to within 1/16 (6.25%). Values of 2^40ns (about 18 minutes) and up
+ * all share the last bucket.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param nanos The duration in nanoseconds. Negative values are recorded as 0.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+
+        long currentMax = max.get();
+
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return (count.sum());
+    }
+
+    /**
+     * @return The sum of every recorded value, in nanoseconds.
+     */
+    public long getTotal() {
+        return (total.sum());
+    }
+
+    /**
+     * @return The largest recorded value, in nanoseconds.
+     */
+    public long getMax() {
+        return (max.get());
+    }
+
+    /**
+     * @return The mean of the recorded values in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long recorded = getCount();
+        return (recorded == 0 ? 0 : (double) getTotal() / recorded);
+    }
+
+    /**
+     * Gets a percentile of the recorded values. Recording can continue while this is being calculated,
+     * in which case the result may or may not include the new values.
+     *
+     * @param percentile The percentile, from 0 to 100.
+     * @return The highest value (within the histogram's precision) which at least percentile% of values don't exceed,
+     * in nanoseconds, or 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long recorded = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            snapshot[bucket] = counts.get(bucket);
+            recorded += snapshot[bucket];
+        }
+
+        if (recorded == 0) {
+            return (0);
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, percentile) / 100 * recorded));
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += snapshot[bucket];
+
+            if (seen >= rank) {
+                // The last bucket has no upper bound, so the max is all we know.
+                return (bucket == BUCKETS - 1 ? getMax() : Math.min(upperBoundOf(bucket), getMax()));
+            }
+        }
+
+        return (getMax());
+    }
+
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return ((int) value);
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+
+        if (exponent >= MAX_EXPONENT) {
+            return (BUCKETS - 1);
+        }
+
+        return ((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (int) ((value >>> (exponent - SUB_BUCKET_BITS)) - SUB_BUCKETS));
+    }
+
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return (bucket);
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long mantissa = SUB_BUCKETS + bucket % SUB_BUCKETS;
+
+        return (((mantissa + 1) << (exponent - SUB_BUCKET_BITS)) - 1);
+    }
+}
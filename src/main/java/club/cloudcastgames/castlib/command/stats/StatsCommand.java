@@ -0,0 +1,80 @@
+package club.cloudcastgames.castlib.command.stats;
+
+import club.cloudcastgames.castlib.command.CastCommandHandler;
+import club.cloudcastgames.castlib.command.Command;
+import club.cloudcastgames.castlib.command.CommandData;
+import club.cloudcastgames.castlib.command.param.Param;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public final class StatsCommand {
+    // How many commands /castlib stats lists without a command name.
+    private static final int TOP_COMMANDS = 10;
+    // Default for the command argument, meaning "no command given"; /castlib stats * lists the top commands too.
+    private static final String ALL_COMMANDS = "*";
+
+    private StatsCommand() {}
+
+    @Command(names = {"castlib stats"}, permission = "castlib.stats", description = "Shows how long commands take to run.")
+    public static void stats(CommandSender sender, @Param(name = "command", defaultValue = ALL_COMMANDS, wildcard = true) String name) {
+        if (name.equals(ALL_COMMANDS)) {
+            List<CommandData> used = new ArrayList<>();
+
+            for (CommandData command : CastCommandHandler.getCommands()) {
+                if (command.getStats().getInvocations() > 0) {
+                    used.add(command);
+                }
+            }
+
+            if (used.isEmpty()) {
+                sender.sendMessage(ChatColor.YELLOW + "No commands have been run yet.");
+                return;
+            }
+
+            used.sort(Comparator.comparingLong((CommandData command) -> command.getStats().getInvocations()).reversed());
+            sender.sendMessage(ChatColor.GOLD + "Most used commands (execution time):");
+
+            for (CommandData command : used.subList(0, Math.min(TOP_COMMANDS, used.size()))) {
+                CommandStats stats = command.getStats();
+                LatencyHistogram execution = stats.getHistogram(CommandPhase.EXECUTION);
+
+                sender.sendMessage(ChatColor.YELLOW + "/" + command.getName() + ChatColor.GRAY + " - " + stats.getInvocations() + " runs ("
+                        + stats.getCount(CommandOutcome.USAGE_ERROR) + " usage errors, " + stats.getCount(CommandOutcome.EXCEPTION) + " exceptions), p50 "
+                        + CommandMetrics.formatNanos(execution.getPercentile(50)) + ", p99 " + CommandMetrics.formatNanos(execution.getPercentile(99)));
+            }
+
+            return;
+        }
+
+        CommandData command = CastCommandHandler.getCommandTrie().get(name);
+
+        if (command == null) {
+            sender.sendMessage(ChatColor.RED + "No command with the name " + name + " found.");
+            return;
+        }
+
+        CommandStats stats = command.getStats();
+
+        sender.sendMessage(ChatColor.GOLD + "/" + command.getName() + ChatColor.GRAY + " - " + stats.getCount(CommandOutcome.SUCCESS) + " successful, "
+                + stats.getCount(CommandOutcome.USAGE_ERROR) + " usage errors, " + stats.getCount(CommandOutcome.EXCEPTION) + " exceptions");
+
+        for (CommandPhase phase : CommandPhase.values()) {
+            LatencyHistogram histogram = stats.getHistogram(phase);
+
+            if (histogram.getCount() == 0) {
+                continue;
+            }
+
+            sender.sendMessage(ChatColor.YELLOW + phase.getKey() + ChatColor.GRAY + ": mean " + CommandMetrics.formatNanos(histogram.getMean())
+                    + ", p50 " + CommandMetrics.formatNanos(histogram.getPercentile(50))
+                    + ", p90 " + CommandMetrics.formatNanos(histogram.getPercentile(90))
+                    + ", p99 " + CommandMetrics.formatNanos(histogram.getPercentile(99))
+                    + ", p99.9 " + CommandMetrics.formatNanos(histogram.getPercentile(99.9))
+                    + ", max " + CommandMetrics.formatNanos(histogram.getMax()));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package club.cloudcastgames.castlib.player;
+
+import org.bukkit.Server;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves names to the UUIDs the server gives players when they join, without going through the server
+ * (lookups run off the main thread, where Bukkit mustn't be used).
+ * In online mode, names are looked up in the profile service, the same one the server's profile repository asks;
+ * in offline mode, every name has its offline UUID.
+ * <p>
+ * Unlike Server#getOfflinePlayer(String), names nobody has resolve to null instead of a made-up offline UUID.
+ */
+public class BukkitProfileResolver implements ProfileResolver {
+    private static final String PROFILE_URL = "https://api.mojang.com/users/profiles/minecraft/";
+    private static final int TIMEOUT = (int) TimeUnit.SECONDS.toMillis(5);
+    // Names no account can have aren't worth a request.
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_]{1,16}");
+    private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*\"([0-9a-fA-F]{32})\"");
+
+    private final boolean onlineMode;
+
+    /**
+     * @param onlineMode If the server authenticates players (see Server#getOnlineMode()).
+     */
+    public BukkitProfileResolver(boolean onlineMode) {
+        this.onlineMode = onlineMode;
+    }
+
+    /**
+     * @return The resolver for a server. This reads its settings, so call it on the main thread.
+     */
+    public static BukkitProfileResolver of(Server server) {
+        return (new BukkitProfileResolver(server.getOnlineMode()));
+    }
+
+    /**
+     * @return The UUID the server gives a player with this name in offline mode (and makes up for unknown names).
+     */
+    public static UUID offlineUUID(String name) {
+        return (UUID.nameUUIDFromBytes(("OfflinePlayer:" + name).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Override
+    public UUID resolve(String name) throws IOException {
+        if (!onlineMode) {
+            return (offlineUUID(name));
+        }
+
+        if (!NAME.matcher(name).matches()) {
+            return (null);
+        }
+
+        HttpURLConnection connection = (HttpURLConnection) new URL(PROFILE_URL + name).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+
+        try {
+            int status = connection.getResponseCode();
+
+            // No content (or not found) means there's no account with that name.
+            if (status == HttpURLConnection.HTTP_NO_CONTENT || status == HttpURLConnection.HTTP_NOT_FOUND) {
+                return (null);
+            } else if (status != HttpURLConnection.HTTP_OK) {
+                throw (new IOException("The profile service answered " + status + " for " + name));
+            }
+
+            StringBuilder body = new StringBuilder();
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    body.append(line);
+                }
+            }
+
+            Matcher id = ID.matcher(body);
+
+            if (!id.find()) {
+                throw (new IOException("Unexpected profile for " + name + ": " + body));
+            }
+
+            String hex = id.group(1);
+            UUID uuid = new UUID(Long.parseUnsignedLong(hex.substring(0, 16), 16), Long.parseUnsignedLong(hex.substring(16), 16));
+
+            // Accounts never have an offline UUID; one would mean the name wasn't really found.
+            return (uuid.equals(offlineUUID(name)) ? null : uuid);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package club.cloudcastgames.castlib.player;
+
+import club.cloudcastgames.castlib.CastLib;
+import club.cloudcastgames.castlib.util.BKTree;
+import com.google.common.base.Preconditions;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+
+/**
+ * A case-insensitive, sorted index of online players by name.
+ * It is kept up to date from join and quit events, so lookups never have to scan every online player:
+ * exact lookups are logarithmic, and prefix lookups only touch the players whose names match.
+ */
+public final class PlayerNameIndex implements Listener {
+    private static final ConcurrentSkipListMap<String, Player> players = new ConcurrentSkipListMap<>();
+    // The same names, for suggesting the closest one to a misspelled name.
+    private static final BKTree names = new BKTree();
+    private static boolean initiated = false;
+
+    private PlayerNameIndex() {}
+
+    /**
+     * Initiates the index with the players who are already online (in case of a reload).
+     * This can only be called once, and is called automatically when CastLib enables.
+     */
+    public static void init() {
+        Preconditions.checkState(!initiated);
+        initiated = true;
+
+        for (Player player : CastLib.getInstance().getServer().getOnlinePlayers()) {
+            players.put(player.getName().toLowerCase(), player);
+            names.add(player.getName());
+        }
+
+        CastLib.getInstance().getServer().getPluginManager().registerEvents(new PlayerNameIndex(), CastLib.getInstance());
+    }
+
+    /**
+     * Gets an online player by their exact name (ignoring case).
+     *
+     * @param name The name of the player.
+     * @return The player, or null if nobody with that name is online.
+     */
+    public static Player getPlayerExact(String name) {
+        return (players.get(name.toLowerCase()));
+    }
+
+    /**
+     * Gets an online player by name, the same way Server#getPlayer does:
+     * an exact match if there is one, otherwise the player with the shortest name starting with it.
+     *
+     * @param name The name, or start of the name, of the player.
+     * @return The player, or null if no online player's name starts with the given name.
+     */
+    public static Player getPlayer(String name) {
+        return (getPlayer(null, name));
+    }
+
+    /**
+     * Gets an online player by name, only considering players the viewer can see.
+     *
+     * @param viewer The player looking for another player, or null to consider everyone.
+     * @param name   The name, or start of the name, of the player.
+     * @return The player, or null if no (visible) player's name starts with the given name.
+     */
+    public static Player getPlayer(Player viewer, String name) {
+        String lowerName = name.toLowerCase();
+        Player found = players.get(lowerName);
+
+        if (found != null && canSee(viewer, found)) {
+            return (found);
+        }
+
+        found = null;
+
+        for (Player player : startingWith(lowerName).values()) {
+            if (canSee(viewer, player) && (found == null || player.getName().length() < found.getName().length())) {
+                found = player;
+            }
+        }
+
+        return (found);
+    }
+
+    /**
+     * Gets the names of every online player whose name starts with the prefix (ignoring case).
+     *
+     * @param viewer The player the names are for, or null to include everyone.
+     * @param prefix The start of the names.
+     * @return The matching names, in alphabetical order.
+     */
+    public static List<String> getNames(Player viewer, String prefix) {
+        List<String> names = new ArrayList<>();
+
+        forEachName(viewer, prefix, names::add);
+        return (names);
+    }
+
+    /**
+     * Goes through the names of the online players whose name starts with the prefix (ignoring case),
+     * without collecting them first.
+     *
+     * @param viewer The player the names are for, or null to include everyone.
+     * @param prefix The start of the names.
+     * @param action Called with every matching name, in alphabetical order. Returns false to stop.
+     */
+    public static void forEachName(Player viewer, String prefix, Predicate<String> action) {
+        for (Player player : startingWith(prefix.toLowerCase()).values()) {
+            if (canSee(viewer, player) && !action.test(player.getName())) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Suggests the online player whose name is closest to a misspelled name.
+     *
+     * @param viewer The player the suggestion is for, or null to consider everyone.
+     * @param name   The misspelled name.
+     * @return The closest (visible) player's name, or null if no name is close enough.
+     */
+    public static String suggest(Player viewer, String name) {
+        for (String candidate : names.search(name, BKTree.tolerance(name.length()), 5)) {
+            Player player = players.get(candidate.toLowerCase());
+
+            if (player != null && canSee(viewer, player)) {
+                return (player.getName());
+            }
+        }
+
+        return (null);
+    }
+
+    private static NavigableMap<String, Player> startingWith(String lowerPrefix) {
+        return (players.subMap(lowerPrefix, true, lowerPrefix + Character.MAX_VALUE, false));
+    }
+
+    private static boolean canSee(Player viewer, Player player) {
+        return (viewer == null || viewer.canSee(player));
+    }
+
+    // Lowest so the player can be looked up by anyone else handling the join.
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        players.put(event.getPlayer().getName().toLowerCase(), event.getPlayer());
+        names.add(event.getPlayer().getName());
+    }
+
+    // Monitor so the player can be looked up by anyone else handling the quit.
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        if (players.remove(event.getPlayer().getName().toLowerCase(), event.getPlayer())) {
+            names.remove(event.getPlayer().getName());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package club.cloudcastgames.castlib.player;
+
+import java.util.UUID;
+
+/**
+ * Looks up the UUID of a player by name, for names the {@link UUIDCache} hasn't seen.
+ * Lookups are always run off the main thread, so implementations are free to block.
+ */
+@FunctionalInterface
+public interface ProfileResolver {
+
+    /**
+     * @param name The name of the player.
+     * @return The player's UUID, or null if there's no player with that name.
+     * @throws Exception If the lookup failed (as opposed to finding nobody).
+     */
+    UUID resolve(String name) throws Exception;
+}
@@ -0,0 +1,347 @@
+package club.cloudcastgames.castlib.player;
+
+import club.cloudcastgames.castlib.CastLib;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.Getter;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+
+import java.io.*;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+/**
+ * A persistent cache of player names and UUIDs.
+ * Every player who joins is remembered, and names which have never joined are looked up once
+ * (off the main thread) through the {@link ProfileResolver}. Names nobody has are remembered as missing for a while,
+ * and lookups are limited to a short burst and then one a second, so typing random names can't flood the profile service
+ * (names over the limit are treated as not found until they can be looked up).
+ * <p>
+ * The cache is stored in an append-only file of (UUID, name) records, so it survives restarts
+ * and recording a player never rewrites the file. Later records override earlier ones, and the
+ * file is compacted on load once it holds a lot of outdated records.
+ */
+public final class UUIDCache implements Listener {
+    private static final int MAGIC = 0x43435543; // "CCUC"
+    private static final int VERSION = 1;
+    // How long a name nobody has is remembered for.
+    private static final long MISSING_EXPIRY = TimeUnit.MINUTES.toMillis(5);
+    // The profile service allows about one lookup a second.
+    private static final long LOOKUP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    private static final int LOOKUP_BURST = 10;
+
+    private static final Map<String, UUID> uuids = new ConcurrentHashMap<>();
+    private static final Map<UUID, String> names = new ConcurrentHashMap<>();
+    private static final Map<String, Long> missing = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<UUID>> lookups = new ConcurrentHashMap<>();
+    // When the lookup limit is full again (the generic cell rate algorithm, as in the command RateLimiter).
+    private static final AtomicLong lookupsFullAt = new AtomicLong(System.nanoTime());
+    private static volatile int missingSweepAt = 64;
+
+    @Getter private static ProfileResolver resolver = new BukkitProfileResolver(true);
+    private static ExecutorService lookupExecutor;
+    private static ExecutorService writeExecutor;
+    private static DataOutputStream output;
+    private static boolean initiated = false;
+
+    private UUIDCache() {}
+
+    /**
+     * Initiates the cache from CastLib's data folder.
+     * This can only be called once, and is called automatically when CastLib enables.
+     */
+    public static void init() {
+        Preconditions.checkState(!initiated);
+        initiated = true;
+
+        setResolver(BukkitProfileResolver.of(CastLib.getInstance().getServer()));
+        load(new File(CastLib.getInstance().getDataFolder(), "uuids.dat"));
+        CastLib.getInstance().getServer().getPluginManager().registerEvents(new UUIDCache(), CastLib.getInstance());
+    }
+
+    /**
+     * Loads the cache from a file and opens it for appending.
+     * This doesn't need a running server, so the cache can be used on its own.
+     *
+     * @param file The file to store the cache in. It will be created if it doesn't exist.
+     */
+    public static void load(File file) {
+        shutdown();
+
+        lookupExecutor = Executors.newFixedThreadPool(2, new ThreadFactoryBuilder().setNameFormat("CastLib UUID Lookup #%d").setDaemon(true).build());
+        writeExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("CastLib UUID Cache Writer").setDaemon(true).build());
+
+        int records = 0;
+        boolean intact = true;
+
+        if (file.exists()) {
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+                    throw (new IOException("Unknown format"));
+                }
+
+                while (true) {
+                    UUID uuid;
+                    String name;
+
+                    try {
+                        uuid = new UUID(input.readLong(), input.readLong());
+                        name = input.readUTF();
+                    } catch (EOFException e) {
+                        // Either the end of the file, or a record which was being written when the server died.
+                        intact = input.read() == -1;
+                        break;
+                    }
+
+                    put(uuid, name);
+                    records++;
+                }
+            } catch (IOException e) {
+                log(Level.WARNING, "Couldn't read " + file.getName() + ", it will be rebuilt", e);
+                intact = false;
+            }
+        } else {
+            intact = false;
+        }
+
+        try {
+            file.getParentFile().mkdirs();
+
+            // Rewrite the file if it doesn't exist, is damaged, or is mostly outdated records.
+            if (!intact || records > names.size() * 2 + 1024) {
+                File temporary = new File(file.getPath() + ".tmp");
+
+                try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)))) {
+                    compacted.writeInt(MAGIC);
+                    compacted.writeInt(VERSION);
+
+                    for (Map.Entry<UUID, String> entry : names.entrySet()) {
+                        write(compacted, entry.getKey(), entry.getValue());
+                    }
+                }
+
+                if (!temporary.renameTo(file) && !(file.delete() && temporary.renameTo(file))) {
+                    throw (new IOException("Couldn't replace " + file.getName()));
+                }
+            }
+
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        } catch (IOException e) {
+            log(Level.WARNING, "Couldn't open " + file.getName() + ", names won't be saved", e);
+        }
+    }
+
+    /**
+     * Flushes and closes the cache file, and stops any lookups.
+     * The cache stays usable in memory.
+     */
+    public static void shutdown() {
+        if (lookupExecutor != null) {
+            lookupExecutor.shutdownNow();
+            lookupExecutor = null;
+        }
+
+        if (writeExecutor != null) {
+            writeExecutor.shutdown();
+
+            try {
+                writeExecutor.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            writeExecutor = null;
+        }
+
+        if (output != null) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+
+            output = null;
+        }
+    }
+
+    /**
+     * Replaces how uncached names are looked up, for example with a local stand-in when there's no profile service.
+     *
+     * @param resolver The resolver to use for future lookups.
+     */
+    public static void setResolver(ProfileResolver resolver) {
+        UUIDCache.resolver = Preconditions.checkNotNull(resolver);
+    }
+
+    /**
+     * @return The UUID of the player with this name (ignoring case), or null if it isn't cached.
+     */
+    public static UUID getUUID(String name) {
+        return (uuids.get(name.toLowerCase()));
+    }
+
+    /**
+     * @return The last known name of the player, or null if it isn't cached.
+     */
+    public static String getName(UUID uuid) {
+        return (names.get(uuid));
+    }
+
+    /**
+     * @return If a recent lookup found no player with this name.
+     */
+    public static boolean isMissing(String name) {
+        Long expiry = missing.get(name.toLowerCase());
+        return (expiry != null && expiry > System.currentTimeMillis());
+    }
+
+    /**
+     * Records a player's name, saving it if it's new or changed.
+     */
+    public static void update(UUID uuid, String name) {
+        if (name.equals(names.get(uuid))) {
+            return;
+        }
+
+        put(uuid, name);
+        missing.remove(name.toLowerCase());
+
+        ExecutorService executor = writeExecutor;
+        DataOutputStream stream = output;
+
+        if (executor != null && stream != null) {
+            executor.execute(() -> {
+                try {
+                    write(stream, uuid, name);
+                    stream.flush();
+                } catch (IOException e) {
+                    log(Level.WARNING, "Couldn't save the name " + name, e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the UUID of a player, looking it up if it isn't cached.
+     * Lookups never happen on the calling thread, and concurrent lookups of the same name are shared.
+     * While the cache isn't loaded, or too many names were looked up recently, uncached names are treated as not found.
+     *
+     * @param name The name of the player.
+     * @return A future completed with the UUID, or null if no player has that name.
+     */
+    public static CompletableFuture<UUID> resolve(String name) {
+        UUID cached = getUUID(name);
+
+        if (cached != null || isMissing(name)) {
+            return (CompletableFuture.completedFuture(cached));
+        }
+
+        String lowerName = name.toLowerCase();
+        CompletableFuture<UUID> future = new CompletableFuture<>();
+        CompletableFuture<UUID> running = lookups.putIfAbsent(lowerName, future);
+
+        if (running != null) {
+            return (running);
+        }
+
+        ExecutorService executor = lookupExecutor;
+
+        try {
+            if (executor != null && acquireLookup()) {
+                executor.execute(() -> lookup(name, lowerName, future));
+                return (future);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shut down since we read it.
+        }
+
+        lookups.remove(lowerName, future);
+        future.complete(null);
+        return (future);
+    }
+
+    private static void lookup(String name, String lowerName, CompletableFuture<UUID> future) {
+        try {
+            UUID uuid = resolver.resolve(name);
+
+            if (uuid != null) {
+                update(uuid, name);
+            } else {
+                markMissing(lowerName);
+            }
+
+            future.complete(uuid);
+        } catch (Throwable e) {
+            future.completeExceptionally(e);
+        } finally {
+            lookups.remove(lowerName, future);
+        }
+    }
+
+    /**
+     * Takes a lookup from the limit, if there's one left.
+     */
+    private static boolean acquireLookup() {
+        long now = System.nanoTime();
+
+        while (true) {
+            long fullAt = lookupsFullAt.get();
+            long arrival = Math.max(fullAt, now);
+
+            if (arrival - now > LOOKUP_INTERVAL * (LOOKUP_BURST - 1)) {
+                return (false);
+            }
+
+            if (lookupsFullAt.compareAndSet(fullAt, arrival + LOOKUP_INTERVAL)) {
+                return (true);
+            }
+        }
+    }
+
+    private static void markMissing(String lowerName) {
+        long now = System.currentTimeMillis();
+        missing.put(lowerName, now + MISSING_EXPIRY);
+
+        // Expired names are removed whenever the map has doubled since the last sweep, so it costs O(1) per name on average.
+        if (missing.size() >= missingSweepAt) {
+            missing.values().removeIf(expiry -> expiry <= now);
+            missingSweepAt = Math.max(64, missing.size() * 2);
+        }
+    }
+
+    private static void put(UUID uuid, String name) {
+        String oldName = names.put(uuid, name);
+
+        if (oldName != null && !oldName.equalsIgnoreCase(name)) {
+            uuids.remove(oldName.toLowerCase(), uuid);
+        }
+
+        uuids.put(name.toLowerCase(), uuid);
+    }
+
+    private static void write(DataOutputStream stream, UUID uuid, String name) throws IOException {
+        stream.writeLong(uuid.getMostSignificantBits());
+        stream.writeLong(uuid.getLeastSignificantBits());
+        stream.writeUTF(name);
+    }
+
+    private static void log(Level level, String message, Throwable throwable) {
+        if (CastLib.getInstance() != null) {
+            CastLib.getInstance().getLogger().log(level, message, throwable);
+        } else {
+            throwable.printStackTrace();
+        }
+    }
+
+    // Lowest so the name is known to anyone else handling the join.
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        update(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+    }
+}
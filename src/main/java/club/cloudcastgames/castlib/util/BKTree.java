@@ -0,0 +1,418 @@
+package club.cloudcastgames.castlib.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A BK-tree of words, for finding the words closest to a misspelling (by case-insensitive edit distance)
+ * without comparing it to every word: only subtrees which can hold a close enough word are visited.
+ * <p>
+ * Words can be added and removed at any time. Removed words are only marked as removed,
+ * and the tree is rebuilt once most of its words are. Searches can run concurrently with each other;
+ * changes wait for them.
+ */
+public final class BKTree {
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Node root;
+    private int size;
+    private int removed;
+
+    /**
+     * Adds a word, if it isn't in the tree yet.
+     *
+     * @param word The word, in the case it should be suggested in.
+     */
+    public void add(String word) {
+        lock.writeLock().lock();
+
+        try {
+            insert(word);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a word, if it's in the tree.
+     *
+     * @param word The word (case-insensitive).
+     */
+    public void remove(String word) {
+        lock.writeLock().lock();
+
+        try {
+            Node node = find(word.toLowerCase());
+
+            if (node == null || node.removed) {
+                return;
+            }
+
+            node.removed = true;
+            removed++;
+
+            if (removed > size / 2) {
+                rebuild();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the words closest to a query.
+     *
+     * @param query       The (possibly misspelled) word.
+     * @param maxDistance The most typos (inserted, removed, changed or swapped letters) to consider.
+     * @param limit       The most words to return.
+     * @return The closest words, closest first (and alphabetically when equally close).
+     */
+    public List<String> search(String query, int maxDistance, int limit) {
+        Query lowerQuery = new Query(query.toLowerCase());
+        // Swapping two letters is two edits, so with a single typo allowed, words are looked for one edit further out.
+        // (With more typos allowed, a swap on its own is already close enough.)
+        int searchDistance = maxDistance == 1 ? 2 : maxDistance;
+        List<Candidate> candidates = new ArrayList<>();
+
+        lock.readLock().lock();
+
+        try {
+            if (root == null) {
+                return (new ArrayList<>());
+            }
+
+            Deque<Node> pending = new ArrayDeque<>();
+            pending.push(root);
+
+            while (!pending.isEmpty()) {
+                Node node = pending.pop();
+                // Beyond this distance, neither the node nor any of its children can be close enough.
+                int bound = Math.max(searchDistance, node.children.length - 1 + searchDistance);
+                int distance = lowerQuery.distance(node.key, bound);
+
+                if (distance <= searchDistance && !node.removed) {
+                    // Swapped letters count as one typo, not two.
+                    int typos = distance <= maxDistance ? typos(lowerQuery.text, node.key) : maxDistance + 1;
+
+                    if (typos <= maxDistance) {
+                        candidates.add(new Candidate(node, typos));
+                    }
+                }
+
+                // By the triangle inequality, only children this far from the node can be close enough to the query.
+                int from = Math.max(1, distance - searchDistance);
+                int to = Math.min(node.children.length - 1, distance + searchDistance);
+
+                for (int childDistance = from; childDistance <= to; childDistance++) {
+                    if (node.children[childDistance] != null) {
+                        pending.push(node.children[childDistance]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        candidates.sort((first, second) -> {
+            int comparison = Integer.compare(first.distance, second.distance);
+            return (comparison != 0 ? comparison : first.node.key.compareTo(second.node.key));
+        });
+
+        List<String> words = new ArrayList<>();
+
+        for (int index = 0; index < Math.min(limit, candidates.size()); index++) {
+            words.add(candidates.get(index).node.word);
+        }
+
+        return (words);
+    }
+
+    /**
+     * @return How many typos to tolerate in a word of the given length: 1 for short words, up to 3 for long ones.
+     */
+    public static int tolerance(int length) {
+        return (length <= 3 ? 1 : length <= 7 ? 2 : 3);
+    }
+
+    /**
+     * @return The number of typos between two (lowercase) strings: the edit distance, counting swapped adjacent letters as one.
+     */
+    static int typos(String first, String second) {
+        int[][] distances = new int[first.length() + 1][second.length() + 1];
+
+        for (int row = 0; row <= first.length(); row++) {
+            for (int column = 0; column <= second.length(); column++) {
+                if (row == 0 || column == 0) {
+                    distances[row][column] = row + column;
+                    continue;
+                }
+
+                int cost = first.charAt(row - 1) == second.charAt(column - 1) ? 0 : 1;
+                int distance = Math.min(distances[row - 1][column - 1] + cost, Math.min(distances[row - 1][column], distances[row][column - 1]) + 1);
+
+                if (row > 1 && column > 1 && first.charAt(row - 1) == second.charAt(column - 2) && first.charAt(row - 2) == second.charAt(column - 1)) {
+                    distance = Math.min(distance, distances[row - 2][column - 2] + 1);
+                }
+
+                distances[row][column] = distance;
+            }
+        }
+
+        return (distances[first.length()][second.length()]);
+    }
+
+    /**
+     * @return The Levenshtein distance between two (lowercase) strings.
+     */
+    static int distance(String first, String second) {
+        return (distance(first, second, new int[second.length() + 1], new int[second.length() + 1], Integer.MAX_VALUE - 1));
+    }
+
+    /**
+     * @param previous A row of at least second.length() + 1, overwritten.
+     * @param current  Another row of at least second.length() + 1, overwritten.
+     * @param limit    The largest distance which matters.
+     * @return The Levenshtein distance between two (lowercase) strings, or limit + 1 if it's larger than limit.
+     */
+    private static int distance(String first, String second, int[] previous, int[] current, int limit) {
+        if (Math.abs(first.length() - second.length()) > limit) {
+            return (limit + 1);
+        }
+
+        for (int index = 0; index <= second.length(); index++) {
+            previous[index] = index;
+        }
+
+        for (int row = 1; row <= first.length(); row++) {
+            current[0] = row;
+            char character = first.charAt(row - 1);
+
+            int rowMinimum = row;
+
+            for (int column = 1; column <= second.length(); column++) {
+                int substitution = previous[column - 1] + (character == second.charAt(column - 1) ? 0 : 1);
+                current[column] = Math.min(substitution, Math.min(previous[column], current[column - 1]) + 1);
+                rowMinimum = Math.min(rowMinimum, current[column]);
+            }
+
+            // Distances never shrink from one row to the next.
+            if (rowMinimum > limit) {
+                return (limit + 1);
+            }
+
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+
+        return (Math.min(previous[second.length()], limit + 1));
+    }
+
+    private void insert(String word) {
+        String key = word.toLowerCase();
+
+        if (root == null) {
+            root = new Node(word, key);
+            size++;
+            return;
+        }
+
+        Node node = root;
+
+        while (true) {
+            int distance = distance(key, node.key);
+
+            if (distance == 0) {
+                if (node.removed) {
+                    node.removed = false;
+                    removed--;
+                }
+
+                return;
+            }
+
+            if (distance >= node.children.length) {
+                node.children = Arrays.copyOf(node.children, distance + 1);
+            }
+
+            if (node.children[distance] == null) {
+                node.children[distance] = new Node(word, key);
+                size++;
+                return;
+            }
+
+            node = node.children[distance];
+        }
+    }
+
+    private Node find(String key) {
+        Node node = root;
+
+        while (node != null) {
+            int distance = distance(key, node.key);
+
+            if (distance == 0) {
+                return (node);
+            }
+
+            node = distance < node.children.length ? node.children[distance] : null;
+        }
+
+        return (null);
+    }
+
+    private void rebuild() {
+        List<String> words = new ArrayList<>();
+        Deque<Node> pending = new ArrayDeque<>();
+
+        if (root != null) {
+            pending.push(root);
+        }
+
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+
+            if (!node.removed) {
+                words.add(node.word);
+            }
+
+            for (Node child : node.children) {
+                if (child != null) {
+                    pending.push(child);
+                }
+            }
+        }
+
+        root = null;
+        size = 0;
+        removed = 0;
+        words.forEach(this::insert);
+    }
+
+    /**
+     * A query, with what's needed to compare it to words quickly.
+     * Queries of up to 64 characters use Myers' bit-parallel algorithm, which handles a whole row of the distance matrix
+     * in a few operations; longer ones fall back to the plain dynamic programming algorithm.
+     */
+    private static final class Query {
+        private final String text;
+        // For each ASCII character, the positions it appears at in the query.
+        private final long[] asciiPositions = new long[128];
+        private final int[] previous;
+        private final int[] current;
+
+        private Query(String text) {
+            this.text = text;
+
+            if (text.length() <= 64) {
+                for (int index = 0; index < text.length(); index++) {
+                    char character = text.charAt(index);
+
+                    if (character < 128) {
+                        asciiPositions[character] |= 1L << index;
+                    }
+                }
+
+                previous = null;
+                current = null;
+            } else {
+                previous = new int[text.length() + 1];
+                current = new int[text.length() + 1];
+            }
+        }
+
+        /**
+         * @return The distance between the query and a (lowercase) word, or limit + 1 if it's larger than limit.
+         */
+        private int distance(String word, int limit) {
+            if (previous != null) {
+                return (BKTree.distance(word, text, previous, current, limit));
+            }
+
+            int length = text.length();
+
+            if (Math.abs(length - word.length()) > limit) {
+                return (limit + 1);
+            }
+
+            if (length == 0) {
+                return (Math.min(word.length(), limit + 1));
+            }
+
+            long last = 1L << (length - 1);
+            long positive = -1L;
+            long negative = 0L;
+            int score = length;
+
+            for (int index = 0; index < word.length(); index++) {
+                long equal = positions(word.charAt(index));
+                long verticalChanges = equal | negative;
+                long horizontalChanges = (((equal & positive) + positive) ^ positive) | equal;
+                long horizontalPositive = negative | ~(horizontalChanges | positive);
+                long horizontalNegative = positive & horizontalChanges;
+
+                if ((horizontalPositive & last) != 0) {
+                    score++;
+                } else if ((horizontalNegative & last) != 0) {
+                    score--;
+                }
+
+                // The first row of the matrix counts up, so it always steps up by one.
+                horizontalPositive = (horizontalPositive << 1) | 1;
+                horizontalNegative <<= 1;
+                positive = horizontalNegative | ~(verticalChanges | horizontalPositive);
+                negative = horizontalPositive & verticalChanges;
+
+                // The score can drop by at most one for every character left.
+                if (score - (word.length() - index - 1) > limit) {
+                    return (limit + 1);
+                }
+            }
+
+            return (Math.min(score, limit + 1));
+        }
+
+        private long positions(char character) {
+            if (character < 128) {
+                return (asciiPositions[character]);
+            }
+
+            long positions = 0;
+
+            for (int index = 0; index < text.length(); index++) {
+                if (text.charAt(index) == character) {
+                    positions |= 1L << index;
+                }
+            }
+
+            return (positions);
+        }
+    }
+
+    private static final class Candidate {
+        private final Node node;
+        private final int distance;
+
+        private Candidate(Node node, int distance) {
+            this.node = node;
+            this.distance = distance;
+        }
+    }
+
+    private static final class Node {
+        private final String word;
+        private final String key;
+        // Children by their distance to this node.
+        private Node[] children = new Node[0];
+        private boolean removed;
+
+        private Node(String word, String key) {
+            this.word = word;
+            this.key = key;
+        }
+    }
+}
@@ -1,77 +1,488 @@
 package club.cloudcastgames.castlib.util;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import org.bukkit.plugin.Plugin;
 
-import java.io.IOException;
+import java.io.*;
+import java.lang.annotation.Annotation;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.CodeSource;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public final class ClassUtils {
+    // Jars with at least this many classes in the scanned package are read in parallel.
+    private static final int PARALLEL_THRESHOLD = 256;
+
+    // Scan results by jar path, so each package of a jar is only ever scanned once.
+    private static final Map<String, JarIndex> indexes = new ConcurrentHashMap<>();
+    private static File indexDirectory;
 
     // Static utility class -- cannot be created.
     private ClassUtils() {
     }
 
+    /**
+     * Sets where scan results are saved, so unchanged jars don't have to be scanned again after a restart.
+     *
+     * @param directory The directory to save scan results in, or null to only keep them in memory.
+     */
+    public static void setIndexDirectory(File directory) {
+        indexDirectory = directory;
+    }
+
     /**
      * Gets all the classes in a the provided package.
      *
      * @param plugin      The plugin who owns the package
      * @param packageName The package to scan classes in.
      * @return The classes in the package packageName.
+     * @deprecated Use {@link #getClassesInPackage(Class, String)}, which works for any jar.
      */
-    //TODO: Make this not require a Plugin object.
+    @Deprecated
     public static Collection<Class<?>> getClassesInPackage(Plugin plugin, String packageName) {
+        return (getClassesInPackage(plugin.getClass(), packageName));
+    }
+
+    /**
+     * Gets all the classes in a the provided package.
+     * Every class is loaded and initialized; use {@link #getAnnotatedClassesInPackage(Class, String, Class)}
+     * to only load the classes you need.
+     *
+     * @param anchor      Any class in the jar to scan. Classes are loaded with its class loader.
+     * @param packageName The package to scan classes in.
+     * @return The classes in the package packageName.
+     */
+    public static Collection<Class<?>> getClassesInPackage(Class<?> anchor, String packageName) {
         Collection<Class<?>> classes = new ArrayList<>();
+        String relPath = packageName.replace('.', '/');
 
-        CodeSource codeSource = plugin.getClass().getProtectionDomain().getCodeSource();
-        URL resource = codeSource.getLocation();
+        try (JarFile jarFile = openJar(anchor)) {
+            Enumeration<JarEntry> entries = jarFile.entries();
+
+            while (entries.hasMoreElements()) {
+                String className = getClassName(entries.nextElement(), relPath);
+
+                if (className != null) {
+                    try {
+                        classes.add(Class.forName(className, true, anchor.getClassLoader()));
+                    } catch (ClassNotFoundException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        return (ImmutableSet.copyOf(classes));
+    }
+
+    /**
+     * Gets the classes in a package which have a method with the given annotation.
+     * Class files are read directly, and only the classes which match are loaded. They are not initialized,
+     * so their static initializers don't run until they're actually used.
+     * <p>
+     * Results are remembered per jar (and saved, see {@link #setIndexDirectory(File)}),
+     * and reused until the jar's size, modification time or contents change.
+     *
+     * @param anchor           Any class in the jar to scan. Classes are loaded with its class loader.
+     * @param packageName      The package to scan classes in (subpackages included).
+     * @param methodAnnotation The annotation to look for on methods. It must be retained at runtime.
+     * @return The matching classes in the package packageName.
+     */
+    public static Collection<Class<?>> getAnnotatedClassesInPackage(Class<?> anchor, String packageName, Class<? extends Annotation> methodAnnotation) {
+        Collection<Class<?>> classes = new ArrayList<>();
+
+        for (String className : getAnnotatedClassNames(getJarPath(anchor), packageName, methodAnnotation)) {
+            try {
+                classes.add(Class.forName(className, false, anchor.getClassLoader()));
+            } catch (ClassNotFoundException | LinkageError e) {
+                e.printStackTrace();
+            }
+        }
+
+        return (ImmutableSet.copyOf(classes));
+    }
+
+    private static List<String> getAnnotatedClassNames(File jar, String packageName, Class<? extends Annotation> methodAnnotation) {
         String relPath = packageName.replace('.', '/');
-        String resPath = resource.getPath().replace("%20", " ");
-        String jarPath = resPath.replaceFirst("[.]jar[!].*", ".jar").replaceFirst("file:", "");
-        JarFile jarFile;
+        String key = relPath + ' ' + methodAnnotation.getName();
+        JarIndex index = indexes.computeIfAbsent(jar.getAbsolutePath(), path -> JarIndex.load(indexFile(jar)));
 
-        try {
-            jarFile = new JarFile(jarPath);
+        synchronized (index) {
+            try {
+                if (!index.isCurrent(jar)) {
+                    index.reset(jar);
+                }
+
+                List<String> classNames = index.packages.get(key);
+
+                if (classNames == null) {
+                    classNames = scan(jar, relPath, "L" + methodAnnotation.getName().replace('.', '/') + ";");
+                    index.packages.put(key, classNames);
+                    index.save(indexFile(jar));
+                }
+
+                return (classNames);
+            } catch (IOException e) {
+                throw (new RuntimeException("Unexpected IOException reading JAR File '" + jar + "'", e));
+            }
+        }
+    }
+
+    private static List<String> scan(File jar, String relPath, String descriptor) throws IOException {
+        byte[] descriptorBytes = descriptor.getBytes(StandardCharsets.UTF_8);
+
+        try (JarFile jarFile = new JarFile(jar)) {
+            List<JarEntry> entries = new ArrayList<>();
+            Enumeration<JarEntry> enumeration = jarFile.entries();
+
+            while (enumeration.hasMoreElements()) {
+                JarEntry entry = enumeration.nextElement();
+
+                if (getClassName(entry, relPath) != null) {
+                    entries.add(entry);
+                }
+            }
+
+            Stream<JarEntry> stream = entries.size() >= PARALLEL_THRESHOLD ? entries.parallelStream() : entries.stream();
+
+            return (ImmutableList.copyOf(stream
+                    .filter(entry -> hasMethodAnnotation(read(jarFile, entry), descriptorBytes))
+                    .map(entry -> getClassName(entry, relPath))
+                    .sorted()
+                    .collect(Collectors.toList())));
+        }
+    }
+
+    private static byte[] read(JarFile jarFile, JarEntry entry) {
+        try (InputStream input = jarFile.getInputStream(entry)) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream(entry.getSize() > 0 ? (int) entry.getSize() : 4096);
+            byte[] buffer = new byte[8192];
+            int read;
+
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+
+            return (output.toByteArray());
         } catch (IOException e) {
-            throw (new RuntimeException("Unexpected IOException reading JAR File '" + jarPath + "'", e));
+            throw (new UncheckedIOException(e));
         }
+    }
+
+    /**
+     * Checks if a class file has a method with the given runtime-visible annotation, without loading it.
+     * The constant pool is checked first, as a class which never mentions the annotation can be skipped right away.
+     */
+    static boolean hasMethodAnnotation(byte[] bytes, byte[] descriptor) {
+        try {
+            int constants = u2(bytes, 8);
+            // Offset of every Utf8 constant, 0 for other constants.
+            int[] utf8 = new int[constants];
+            boolean mentioned = false;
+            int position = 10;
+
+            for (int index = 1; index < constants; index++) {
+                switch (bytes[position]) {
+                    case 1: // Utf8
+                        utf8[index] = position;
+                        mentioned |= utf8Equals(bytes, position, descriptor);
+                        position += 3 + u2(bytes, position + 1);
+                        break;
+                    case 5: // Long
+                    case 6: // Double
+                        index++;
+                        position += 9;
+                        break;
+                    case 7: // Class
+                    case 8: // String
+                    case 16: // MethodType
+                    case 19: // Module
+                    case 20: // Package
+                        position += 3;
+                        break;
+                    case 15: // MethodHandle
+                        position += 4;
+                        break;
+                    default: // Integer, Float, the references, NameAndType, Dynamic, InvokeDynamic
+                        position += 5;
+                }
+            }
+
+            if (!mentioned) {
+                return (false);
+            }
 
-        Enumeration<JarEntry> entries = jarFile.entries();
+            // Access flags, this class and super class, then the interfaces.
+            position += 6;
+            position += 2 + u2(bytes, position) * 2;
 
-        while (entries.hasMoreElements()) {
-            JarEntry entry = entries.nextElement();
-            String entryName = entry.getName();
-            String className = null;
+            // Fields.
+            int fields = u2(bytes, position);
+            position += 2;
 
-            if (entryName.endsWith(".class") && entryName.startsWith(relPath) && entryName.length() > (relPath.length() + "/".length())) {
-                className = entryName.replace('/', '.').replace('\\', '.').replace(".class", "");
+            for (int field = 0; field < fields; field++) {
+                position = skipAttributes(bytes, position + 6);
             }
 
-            if (className != null) {
-                Class<?> clazz = null;
+            // Methods.
+            int methods = u2(bytes, position);
+            position += 2;
 
-                try {
-                    clazz = Class.forName(className);
-                } catch (ClassNotFoundException e) {
-                    e.printStackTrace();
+            for (int method = 0; method < methods; method++) {
+                int attributes = u2(bytes, position + 6);
+                position += 8;
+
+                for (int attribute = 0; attribute < attributes; attribute++) {
+                    int name = u2(bytes, position);
+                    int length = u4(bytes, position + 2);
+                    position += 6;
+
+                    if (utf8[name] != 0 && utf8Equals(bytes, utf8[name], RUNTIME_VISIBLE_ANNOTATIONS)) {
+                        int annotations = u2(bytes, position);
+                        int annotationPosition = position + 2;
+
+                        for (int annotation = 0; annotation < annotations; annotation++) {
+                            int type = u2(bytes, annotationPosition);
+
+                            if (utf8[type] != 0 && utf8Equals(bytes, utf8[type], descriptor)) {
+                                return (true);
+                            }
+
+                            annotationPosition = skipAnnotation(bytes, annotationPosition);
+                        }
+                    }
+
+                    position += length;
                 }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // Not a valid class file, so it can't have any commands.
+        }
+
+        return (false);
+    }
 
-                if (clazz != null) {
-                    classes.add(clazz);
+    private static final byte[] RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations".getBytes(StandardCharsets.UTF_8);
+
+    private static int skipAttributes(byte[] bytes, int position) {
+        int attributes = u2(bytes, position);
+        position += 2;
+
+        for (int attribute = 0; attribute < attributes; attribute++) {
+            position += 6 + u4(bytes, position + 2);
+        }
+
+        return (position);
+    }
+
+    private static int skipAnnotation(byte[] bytes, int position) {
+        int pairs = u2(bytes, position + 2);
+        position += 4;
+
+        for (int pair = 0; pair < pairs; pair++) {
+            position = skipElementValue(bytes, position + 2);
+        }
+
+        return (position);
+    }
+
+    private static int skipElementValue(byte[] bytes, int position) {
+        switch (bytes[position]) {
+            case 'e':
+                return (position + 5);
+            case '@':
+                return (skipAnnotation(bytes, position + 1));
+            case '[':
+                int values = u2(bytes, position + 1);
+                position += 3;
+
+                for (int value = 0; value < values; value++) {
+                    position = skipElementValue(bytes, position);
                 }
+
+                return (position);
+            default: // Constants and classes
+                return (position + 3);
+        }
+    }
+
+    private static boolean utf8Equals(byte[] bytes, int position, byte[] expected) {
+        if (u2(bytes, position + 1) != expected.length) {
+            return (false);
+        }
+
+        for (int index = 0; index < expected.length; index++) {
+            if (bytes[position + 3 + index] != expected[index]) {
+                return (false);
             }
         }
 
+        return (true);
+    }
+
+    private static int u2(byte[] bytes, int position) {
+        return (((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF));
+    }
+
+    private static int u4(byte[] bytes, int position) {
+        return ((u2(bytes, position) << 16) | u2(bytes, position + 2));
+    }
+
+    private static String getClassName(JarEntry entry, String relPath) {
+        String entryName = entry.getName();
+
+        if (entryName.endsWith(".class") && entryName.startsWith(relPath) && entryName.length() > (relPath.length() + "/".length())) {
+            return (entryName.replace('/', '.').replace('\\', '.').replace(".class", ""));
+        }
+
+        return (null);
+    }
+
+    private static JarFile openJar(Class<?> anchor) {
+        File jar = getJarPath(anchor);
+
         try {
-            jarFile.close();
+            return (new JarFile(jar));
         } catch (IOException e) {
-            e.printStackTrace();
+            throw (new RuntimeException("Unexpected IOException reading JAR File '" + jar + "'", e));
         }
+    }
 
-        return (ImmutableSet.copyOf(classes));
+    private static File getJarPath(Class<?> anchor) {
+        CodeSource codeSource = anchor.getProtectionDomain().getCodeSource();
+        URL resource = codeSource.getLocation();
+
+        try {
+            return (new File(resource.toURI()));
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            String resPath = resource.getPath().replace("%20", " ");
+            return (new File(resPath.replaceFirst("[.]jar[!].*", ".jar").replaceFirst("file:", "")));
+        }
+    }
+
+    private static File indexFile(File jar) {
+        File directory = indexDirectory;
+        return (directory == null ? null : new File(directory, jar.getName() + "-" + Integer.toHexString(jar.getAbsolutePath().hashCode()) + ".idx"));
+    }
+
+    /**
+     * Scan results for one jar, valid as long as the jar is unchanged.
+     */
+    private static final class JarIndex {
+        private long size = -1;
+        private long modified = -1;
+        private long hash;
+        private final Map<String, List<String>> packages = new HashMap<>();
+
+        private static JarIndex load(File file) {
+            JarIndex index = new JarIndex();
+
+            if (file == null || !file.exists()) {
+                return (index);
+            }
+
+            try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                index.size = input.readLong();
+                index.modified = input.readLong();
+                index.hash = input.readLong();
+
+                for (int packages = input.readInt(); packages > 0; packages--) {
+                    String key = input.readUTF();
+                    String[] classNames = new String[input.readInt()];
+
+                    for (int name = 0; name < classNames.length; name++) {
+                        classNames[name] = input.readUTF();
+                    }
+
+                    index.packages.put(key, ImmutableList.copyOf(classNames));
+                }
+            } catch (IOException e) {
+                // A broken index is the same as no index.
+                return (new JarIndex());
+            }
+
+            return (index);
+        }
+
+        private void save(File file) {
+            if (file == null) {
+                return;
+            }
+
+            file.getParentFile().mkdirs();
+
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+                output.writeLong(size);
+                output.writeLong(modified);
+                output.writeLong(hash);
+                output.writeInt(packages.size());
+
+                for (Map.Entry<String, List<String>> entry : packages.entrySet()) {
+                    output.writeUTF(entry.getKey());
+                    output.writeInt(entry.getValue().size());
+
+                    for (String className : entry.getValue()) {
+                        output.writeUTF(className);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Checks if the jar is the one this index was built from.
+         * Size and modification time are checked first; if only the time changed,
+         * the jar's central directory (entry names and CRCs) decides, without reading any entries.
+         */
+        private boolean isCurrent(File jar) throws IOException {
+            if (jar.length() != size) {
+                return (false);
+            }
+
+            if (jar.lastModified() == modified) {
+                return (true);
+            }
+
+            if (hash(jar) != hash) {
+                return (false);
+            }
+
+            modified = jar.lastModified();
+            return (true);
+        }
+
+        private void reset(File jar) throws IOException {
+            size = jar.length();
+            modified = jar.lastModified();
+            hash = hash(jar);
+            packages.clear();
+        }
+
+        private static long hash(File jar) throws IOException {
+            long hash = 1125899906842597L;
+
+            try (JarFile jarFile = new JarFile(jar)) {
+                Enumeration<JarEntry> entries = jarFile.entries();
+
+                while (entries.hasMoreElements()) {
+                    JarEntry entry = entries.nextElement();
+                    hash = 31 * hash + entry.getName().hashCode();
+                    hash = 31 * hash + entry.getCrc();
+                }
+            }
+
+            return (hash);
+        }
     }
 }
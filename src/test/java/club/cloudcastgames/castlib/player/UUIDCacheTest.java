@@ -0,0 +1,99 @@
+package club.cloudcastgames.castlib.player;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Looks names up through a stand-in {@link ProfileResolver}, so no profile service is needed.
+ * The cache is static, so every test uses names of its own.
+ */
+public class UUIDCacheTest {
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void shutdown() {
+        UUIDCache.shutdown();
+        UUIDCache.setResolver(new BukkitProfileResolver(true));
+    }
+
+    @Test
+    public void resolvesAndSavesKnownNames() throws Exception {
+        UUID uuid = UUID.randomUUID();
+        File file = load();
+        long length = file.length();
+
+        UUIDCache.setResolver(name -> name.equals("Known") ? uuid : null);
+
+        assertEquals(uuid, UUIDCache.resolve("Known").get(5, TimeUnit.SECONDS));
+        assertEquals(uuid, UUIDCache.getUUID("known"));
+        assertEquals("Known", UUIDCache.getName(uuid));
+
+        // Flushes the file: one record, of the UUID and the name.
+        UUIDCache.shutdown();
+        assertEquals(length + 16 + 2 + "Known".length(), file.length());
+    }
+
+    @Test
+    public void remembersUnknownNamesWithoutSavingThem() throws Exception {
+        AtomicInteger lookups = new AtomicInteger();
+        File file = load();
+        long length = file.length();
+
+        UUIDCache.setResolver(name -> {
+            lookups.incrementAndGet();
+            return (null);
+        });
+
+        assertNull(UUIDCache.resolve("Unknown").get(5, TimeUnit.SECONDS));
+        assertTrue(UUIDCache.isMissing("unknown"));
+        assertNull(UUIDCache.resolve("UNKNOWN").get(5, TimeUnit.SECONDS));
+        assertEquals(1, lookups.get());
+
+        UUIDCache.shutdown();
+        assertEquals(length, file.length());
+    }
+
+    @Test
+    public void failedLookupsAreNotRemembered() throws Exception {
+        load();
+        UUIDCache.setResolver(name -> {
+            throw (new IllegalStateException("Profile service down"));
+        });
+
+        assertTrue(UUIDCache.resolve("Failing").handle((uuid, error) -> error != null).get(5, TimeUnit.SECONDS));
+        assertFalse(UUIDCache.isMissing("Failing"));
+    }
+
+    @Test
+    public void resolvesNothingWhileNotLoaded() throws Exception {
+        UUIDCache.shutdown();
+        UUIDCache.setResolver(name -> UUID.randomUUID());
+
+        assertNull(UUIDCache.resolve("NotLoaded").get(5, TimeUnit.SECONDS));
+        assertFalse(UUIDCache.isMissing("NotLoaded"));
+    }
+
+    @Test
+    public void offlineModeUsesOfflineUUIDs() throws Exception {
+        assertEquals(BukkitProfileResolver.offlineUUID("Offline"), new BukkitProfileResolver(false).resolve("Offline"));
+        assertEquals(3, BukkitProfileResolver.offlineUUID("Offline").version());
+    }
+
+    private File load() {
+        File file = new File(folder.getRoot(), "uuids.dat");
+        UUIDCache.load(file);
+        return (file);
+    }
+}